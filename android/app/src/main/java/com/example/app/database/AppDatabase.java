@@ -2,20 +2,38 @@ package com.example.app.database;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import com.example.app.database.dao.SaleDao;
 import com.example.app.database.dao.OrderDao;
 import com.example.app.database.dao.StockDao;
 import com.example.app.database.dao.SupermarketDao;
 import com.example.app.database.dao.OfflineQueueDao;
+import com.example.app.database.dao.IdMappingDao;
+import com.example.app.database.dao.FragranceDao;
+import com.example.app.database.dao.SummaryDao;
+import com.example.app.database.dao.QueueCounterDao;
+import com.example.app.database.dao.SyncWatermarkDao;
+import com.example.app.database.dao.DeadLetterDao;
 import com.example.app.database.entity.Sale;
 import com.example.app.database.entity.Order;
 import com.example.app.database.entity.Stock;
 import com.example.app.database.entity.Supermarket;
 import com.example.app.database.entity.OfflineQueueItem;
+import com.example.app.database.entity.IdMapping;
+import com.example.app.database.entity.SaleFragrance;
+import com.example.app.database.entity.StockFragrance;
+import com.example.app.database.entity.SalesMonthlySummary;
+import com.example.app.database.entity.SalesSupermarketSummary;
+import com.example.app.database.entity.SupermarketFts;
+import com.example.app.database.entity.QueueCounter;
+import com.example.app.database.entity.SyncWatermark;
+import com.example.app.database.entity.DeadLetterItem;
 
 @Database(
     entities = {
@@ -23,33 +41,76 @@ import com.example.app.database.entity.OfflineQueueItem;
         Order.class,
         Stock.class,
         Supermarket.class,
-        OfflineQueueItem.class
+        OfflineQueueItem.class,
+        IdMapping.class,
+        SaleFragrance.class,
+        StockFragrance.class,
+        SalesMonthlySummary.class,
+        SalesSupermarketSummary.class,
+        SupermarketFts.class,
+        QueueCounter.class,
+        SyncWatermark.class,
+        DeadLetterItem.class
     },
-    version = 1,
+    version = AppDatabase.VERSION,
     exportSchema = false
 )
 public abstract class AppDatabase extends RoomDatabase {
     
+    static final int VERSION = 13;
+    
     private static final String DATABASE_NAME = "topfresh_offline.db";
     private static volatile AppDatabase INSTANCE;
     
+    static final Migration MIGRATION_12_13 = new Migration(12, 13) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            // Null until the item is rewritten; ordering falls back to scanning the payload
+            db.execSQL("ALTER TABLE offline_queue ADD COLUMN referenced_ids TEXT");
+        }
+    };
+    
+    /**
+     * Schema changes from here on ship a Migration. Older versions have no path and are rebuilt,
+     * with the queue tables carried over by QueueCarryOver.
+     */
+    private static final Migration[] MIGRATIONS = {MIGRATION_12_13};
+    private static final int OLDEST_MIGRATED_VERSION = 12;
+    
     // DAOs
     public abstract SaleDao saleDao();
     public abstract OrderDao orderDao();
     public abstract StockDao stockDao();
     public abstract SupermarketDao supermarketDao();
     public abstract OfflineQueueDao offlineQueueDao();
+    public abstract IdMappingDao idMappingDao();
+    public abstract FragranceDao fragranceDao();
+    public abstract SummaryDao summaryDao();
+    public abstract QueueCounterDao queueCounterDao();
+    public abstract SyncWatermarkDao syncWatermarkDao();
+    public abstract DeadLetterDao deadLetterDao();
     
     public static AppDatabase getInstance(Context context) {
         if (INSTANCE == null) {
             synchronized (AppDatabase.class) {
                 if (INSTANCE == null) {
+                    QueueCarryOver.save(context, DATABASE_NAME, VERSION, OLDEST_MIGRATED_VERSION);
                     INSTANCE = Room.databaseBuilder(
                         context.getApplicationContext(),
                         AppDatabase.class,
                         DATABASE_NAME
                     )
+                    .addMigrations(MIGRATIONS)
                     .fallbackToDestructiveMigration()
+                    .addCallback(new Callback() {
+                        @Override
+                        public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                            QueueCarryOver.restore(context, DATABASE_NAME, db);
+                            SummaryTriggers.install(db);
+                            QueueCounterTriggers.install(db);
+                            DeferredIndexes.restorePending(db);
+                        }
+                    })
                     .build();
                 }
             }
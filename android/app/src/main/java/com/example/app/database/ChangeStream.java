@@ -0,0 +1,125 @@
+package com.example.app.database;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A query that re-runs only when Room's InvalidationTracker reports a write to one of its
+ * tables, and tells the listener on the main thread what changed.
+ *
+ * Invalidations that land within COALESCE_WINDOW_MS of each other cause a single re-query,
+ * queries run on a shared background thread, and nothing is delivered when the result is
+ * unchanged. Call {@link #stop()} when the observer goes away; the tracker holds a strong
+ * reference until then.
+ *
+ * @param <S> query result
+ * @param <E> change event delivered to the listener
+ */
+public abstract class ChangeStream<S, E> {
+    private static final String TAG = "ChangeStream";
+    private static final long COALESCE_WINDOW_MS = 50;
+    
+    private static final ExecutorService queryExecutor = Executors.newSingleThreadExecutor();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    
+    public interface Listener<E> {
+        void onChanged(E change);
+    }
+    
+    private final AppDatabase database;
+    private final InvalidationTracker.Observer observer;
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean(false);
+    private final Runnable dispatchRefresh = new Runnable() {
+        @Override
+        public void run() {
+            refreshScheduled.set(false);
+            queryExecutor.execute(ChangeStream.this::refresh);
+        }
+    };
+    
+    private volatile Listener<E> listener;
+    private S lastResult; // Only touched on the query thread
+    
+    protected ChangeStream(AppDatabase database, String... tables) {
+        this.database = database;
+        this.observer = new InvalidationTracker.Observer(tables) {
+            @Override
+            public void onInvalidated(@NonNull Set<String> invalidatedTables) {
+                scheduleRefresh();
+            }
+        };
+    }
+    
+    /**
+     * Run the query on the background thread
+     */
+    protected abstract S query();
+    
+    /**
+     * Change between two results, or null when there is nothing to report.
+     * {@code previous} is null on the first run.
+     */
+    protected abstract E diff(S previous, S current);
+    
+    /**
+     * Start observing; the listener gets the initial result and then every change
+     */
+    public void start(Listener<E> listener) {
+        this.listener = listener;
+        database.getInvalidationTracker().addObserver(observer);
+        scheduleRefresh();
+    }
+    
+    /**
+     * Stop observing. A later {@link #start} delivers the initial result again.
+     */
+    public void stop() {
+        listener = null;
+        database.getInvalidationTracker().removeObserver(observer);
+        mainHandler.removeCallbacks(dispatchRefresh);
+        refreshScheduled.set(false);
+        // Queued behind any refresh in flight, and ahead of the first one after a restart
+        queryExecutor.execute(() -> lastResult = null);
+    }
+    
+    private void scheduleRefresh() {
+        // The first invalidation in a window schedules the query, later ones ride along
+        if (refreshScheduled.compareAndSet(false, true)) {
+            mainHandler.postDelayed(dispatchRefresh, COALESCE_WINDOW_MS);
+        }
+    }
+    
+    private void refresh() {
+        if (listener == null) {
+            return;
+        }
+        
+        final E change;
+        try {
+            S current = query();
+            change = diff(lastResult, current);
+            lastResult = current;
+        } catch (Exception e) {
+            Log.e(TAG, "Error refreshing change stream", e);
+            return;
+        }
+        
+        if (change != null) {
+            mainHandler.post(() -> {
+                Listener<E> target = listener;
+                if (target != null) {
+                    target.onChanged(change);
+                }
+            });
+        }
+    }
+}
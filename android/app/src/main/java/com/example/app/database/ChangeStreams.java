@@ -0,0 +1,82 @@
+package com.example.app.database;
+
+import com.example.app.database.converter.EntityTypeAdapters;
+import com.example.app.database.entity.Order;
+import com.example.app.database.entity.Sale;
+import com.example.app.database.entity.Stock;
+import com.example.app.database.entity.Supermarket;
+import com.example.app.offline.QueueCounters;
+
+/**
+ * Ready-made change streams for the queue counters and entity lists. The counter streams are
+ * woken by queue writes but read the in-memory {@link QueueCounters}, not the queue table.
+ */
+public final class ChangeStreams {
+    private static final String TABLE_QUEUE = "offline_queue";
+    private static final String TABLE_DEAD_LETTERS = "dead_letters";
+    
+    private ChangeStreams() {
+        // Prevent instantiation
+    }
+    
+    public static ValueChangeStream<Integer> pendingCount(AppDatabase database) {
+        QueueCounters counters = QueueCounters.getInstance(database);
+        return new ValueChangeStream<>(database, counters::getPendingCount, TABLE_QUEUE);
+    }
+    
+    /**
+     * Failed queue items plus dead letters
+     */
+    public static ValueChangeStream<Integer> failedCount(AppDatabase database) {
+        QueueCounters counters = QueueCounters.getInstance(database);
+        return new ValueChangeStream<>(database, counters::getFailedCount, TABLE_QUEUE, TABLE_DEAD_LETTERS);
+    }
+    
+    public static ValueChangeStream<Integer> queueSize(AppDatabase database) {
+        QueueCounters counters = QueueCounters.getInstance(database);
+        return new ValueChangeStream<>(database, counters::getQueueSize, TABLE_QUEUE);
+    }
+    
+    /**
+     * Any value derived from the queue and the dead letters, re-read after writes to either.
+     * The value needs equals() for unchanged results to be skipped.
+     */
+    public static <T> ValueChangeStream<T> queueValue(AppDatabase database, ValueChangeStream.ValueQuery<T> query) {
+        return new ValueChangeStream<>(database, query, TABLE_QUEUE, TABLE_DEAD_LETTERS);
+    }
+    
+    /**
+     * Most recent sales, newest first
+     */
+    public static ListChangeStream<Sale> recentSales(AppDatabase database, int limit) {
+        return new ListChangeStream<>(database,
+            () -> database.saleDao().getSalesPageFirst(limit),
+            sale -> sale.id,
+            sale -> sale.syncStatus + EntityTypeAdapters.SALE.toJson(sale),
+            "sales");
+    }
+    
+    public static ListChangeStream<Order> recentOrders(AppDatabase database, int limit) {
+        return new ListChangeStream<>(database,
+            () -> database.orderDao().getOrdersPageFirst(limit),
+            order -> order.id,
+            order -> order.syncStatus + EntityTypeAdapters.ORDER.toJson(order),
+            "orders");
+    }
+    
+    public static ListChangeStream<Stock> recentStock(AppDatabase database, int limit) {
+        return new ListChangeStream<>(database,
+            () -> database.stockDao().getStockPageFirst(limit),
+            stock -> stock.id,
+            stock -> stock.syncStatus + EntityTypeAdapters.STOCK.toJson(stock),
+            "stock");
+    }
+    
+    public static ListChangeStream<Supermarket> supermarkets(AppDatabase database) {
+        return new ListChangeStream<>(database,
+            () -> database.supermarketDao().getAllSupermarkets(),
+            supermarket -> supermarket.id,
+            supermarket -> supermarket.syncStatus + EntityTypeAdapters.SUPERMARKET.toJson(supermarket),
+            "supermarkets");
+    }
+}
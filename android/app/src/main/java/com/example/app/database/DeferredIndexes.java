@@ -0,0 +1,74 @@
+package com.example.app.database;
+
+import android.database.Cursor;
+import android.text.TextUtils;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drops secondary indices for a bulk load and builds them again afterwards, which is much
+ * cheaper than updating every index row by row. The dropped DDL is kept in sync_watermarks
+ * until the rebuild, so an interrupted load is repaired on the next open.
+ */
+public final class DeferredIndexes {
+    private static final String SEPARATOR = ";\n";
+    
+    private DeferredIndexes() {
+        // Prevent instantiation
+    }
+    
+    /**
+     * Drop the non-unique indices of the tables
+     * @return DDL to pass to {@link #restore} later
+     */
+    public static String drop(SupportSQLiteDatabase db, String... tables) {
+        List<String> statements = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        
+        for (String table : tables) {
+            // Automatic indices (sql IS NULL) back primary keys and unique constraints; keep them
+            try (Cursor cursor = db.query("SELECT name, sql FROM sqlite_master WHERE type = 'index' "
+                    + "AND tbl_name = ? AND sql IS NOT NULL AND sql NOT LIKE 'CREATE UNIQUE%'", new Object[] {table})) {
+                while (cursor.moveToNext()) {
+                    names.add(cursor.getString(0));
+                    statements.add(cursor.getString(1));
+                }
+            }
+        }
+        
+        for (String name : names) {
+            db.execSQL("DROP INDEX IF EXISTS `" + name + "`");
+        }
+        return TextUtils.join(SEPARATOR, statements);
+    }
+    
+    public static void restore(SupportSQLiteDatabase db, String ddl) {
+        if (ddl == null || ddl.isEmpty()) {
+            return;
+        }
+        for (String statement : ddl.split(SEPARATOR)) {
+            db.execSQL(statement.replaceFirst("(?i)^CREATE INDEX (IF NOT EXISTS )?", "CREATE INDEX IF NOT EXISTS "));
+        }
+    }
+    
+    /**
+     * Rebuild indices left dropped by an interrupted bulk load
+     */
+    static void restorePending(SupportSQLiteDatabase db) {
+        List<String> pending = new ArrayList<>();
+        try (Cursor cursor = db.query("SELECT pending_index_sql FROM sync_watermarks WHERE pending_index_sql IS NOT NULL")) {
+            while (cursor.moveToNext()) {
+                pending.add(cursor.getString(0));
+            }
+        }
+        for (String ddl : pending) {
+            restore(db, ddl);
+        }
+        if (!pending.isEmpty()) {
+            db.execSQL("UPDATE sync_watermarks SET pending_index_sql = NULL");
+        }
+    }
+}
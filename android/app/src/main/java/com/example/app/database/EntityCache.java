@@ -0,0 +1,203 @@
+package com.example.app.database;
+
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import com.example.app.database.entity.Order;
+import com.example.app.database.entity.Sale;
+import com.example.app.database.entity.Stock;
+import com.example.app.database.entity.Supermarket;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded LRU cache of decoded entities by id, in front of the getXxxById lookups.
+ *
+ * Writers evict the rows they change as part of the write: the DAO insert/update wrappers,
+ * the pull-sync upserts and deletes, and id remapping. The InvalidationTracker observer is
+ * only a backstop that clears a whole table, asynchronously, after any other committed write.
+ * A load that raced with a write is not cached. Returned entities are shared; treat them as
+ * read-only.
+ */
+public class EntityCache {
+    public static final int MAX_ENTRIES_PER_TABLE = 256;
+    
+    private static volatile EntityCache INSTANCE;
+    
+    private final AppDatabase database;
+    private final TableCache<Sale> sales = new TableCache<>("sales");
+    private final TableCache<Order> orders = new TableCache<>("orders");
+    private final TableCache<Stock> stock = new TableCache<>("stock");
+    private final TableCache<Supermarket> supermarkets = new TableCache<>("supermarkets");
+    
+    private EntityCache(AppDatabase database) {
+        this.database = database;
+        database.getInvalidationTracker().addObserver(
+            new InvalidationTracker.Observer("sales", "orders", "stock", "supermarkets") {
+                @Override
+                public void onInvalidated(@NonNull Set<String> tables) {
+                    for (String table : tables) {
+                        TableCache<?> cache = cacheFor(table);
+                        if (cache != null) {
+                            cache.invalidate();
+                        }
+                    }
+                }
+            });
+    }
+    
+    public static EntityCache getInstance(AppDatabase database) {
+        if (INSTANCE == null) {
+            synchronized (EntityCache.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new EntityCache(database);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+    
+    /**
+     * Drop one row from the cache, if the cache exists yet. Called by writers right after the
+     * write, so their next read sees it without waiting for the InvalidationTracker.
+     */
+    public static void evict(String table, String id) {
+        EntityCache cache = INSTANCE;
+        TableCache<?> tableCache = cache != null ? cache.cacheFor(table) : null;
+        if (tableCache != null && id != null) {
+            tableCache.evict(id);
+        }
+    }
+    
+    /**
+     * Drop a whole table, for writes that touch rows by something other than their id
+     */
+    public static void evictTable(String table) {
+        EntityCache cache = INSTANCE;
+        TableCache<?> tableCache = cache != null ? cache.cacheFor(table) : null;
+        if (tableCache != null) {
+            tableCache.invalidate();
+        }
+    }
+    
+    public Sale getSale(String id) {
+        return sales.get(id, () -> database.saleDao().getSaleById(id));
+    }
+    
+    public Order getOrder(String id) {
+        return orders.get(id, () -> database.orderDao().getOrderById(id));
+    }
+    
+    public Stock getStock(String id) {
+        return stock.get(id, () -> database.stockDao().getStockById(id));
+    }
+    
+    public Supermarket getSupermarket(String id) {
+        return supermarkets.get(id, () -> database.supermarketDao().getSupermarketById(id));
+    }
+    
+    /**
+     * Hit/miss counters per table
+     */
+    public Map<String, Stats> getStats() {
+        Map<String, Stats> stats = new LinkedHashMap<>();
+        for (TableCache<?> cache : new TableCache<?>[] {sales, orders, stock, supermarkets}) {
+            stats.put(cache.table, cache.stats());
+        }
+        return stats;
+    }
+    
+    public void clear() {
+        sales.invalidate();
+        orders.invalidate();
+        stock.invalidate();
+        supermarkets.invalidate();
+    }
+    
+    private TableCache<?> cacheFor(String table) {
+        switch (table) {
+            case "sales":
+                return sales;
+            case "orders":
+                return orders;
+            case "stock":
+                return stock;
+            case "supermarkets":
+                return supermarkets;
+            default:
+                return null;
+        }
+    }
+    
+    public static class Stats {
+        public final long hits;
+        public final long misses;
+        public final int size;
+        
+        Stats(long hits, long misses, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.size = size;
+        }
+        
+        public double hitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+    
+    private interface Loader<T> {
+        T load();
+    }
+    
+    private static class TableCache<T> {
+        final String table;
+        final LruCache<String, T> entries = new LruCache<>(MAX_ENTRIES_PER_TABLE);
+        final AtomicLong generation = new AtomicLong();
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        
+        TableCache(String table) {
+            this.table = table;
+        }
+        
+        T get(String id, Loader<T> loader) {
+            if (id == null) {
+                return null;
+            }
+            T cached = entries.get(id);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+            
+            misses.incrementAndGet();
+            long loadGeneration = generation.get();
+            T loaded = loader.load();
+            // Skip caching if the table changed while loading; the row may already be stale
+            if (loaded != null && generation.get() == loadGeneration) {
+                entries.put(id, loaded);
+            }
+            return loaded;
+        }
+        
+        void evict(String id) {
+            generation.incrementAndGet();
+            entries.remove(id);
+        }
+        
+        void invalidate() {
+            generation.incrementAndGet();
+            entries.evictAll();
+        }
+        
+        Stats stats() {
+            return new Stats(hits.get(), misses.get(), entries.size());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.app.database;
+
+import com.example.app.database.entity.Order;
+import com.example.app.database.entity.Sale;
+import com.example.app.database.entity.Stock;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Keyset pagination over sales, orders and stock backed by the (date, id) indices.
+ * Each page costs one index seek regardless of how deep into the history it is.
+ */
+public class EntityPager {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    
+    private final AppDatabase database;
+    
+    public EntityPager(AppDatabase database) {
+        this.database = database;
+    }
+    
+    /**
+     * @param beforeDate cursor from the previous page, or null for the first page
+     */
+    public Page<Sale> getSales(Long beforeDate, String beforeId, int pageSize) {
+        int limit = pageSize + 1;
+        List<Sale> rows = beforeDate == null
+            ? database.saleDao().getSalesPageFirst(limit)
+            : database.saleDao().getSalesPageAfter(beforeDate, beforeId, limit);
+        return toPage(rows, pageSize, sale -> sale.date, sale -> sale.id);
+    }
+    
+    public Page<Sale> getSalesBySupermarket(String supermarketId, Long beforeDate, String beforeId, int pageSize) {
+        int limit = pageSize + 1;
+        List<Sale> rows = beforeDate == null
+            ? database.saleDao().getSalesBySupermarketPageFirst(supermarketId, limit)
+            : database.saleDao().getSalesBySupermarketPageAfter(supermarketId, beforeDate, beforeId, limit);
+        return toPage(rows, pageSize, sale -> sale.date, sale -> sale.id);
+    }
+    
+    public Page<Order> getOrders(Long beforeDate, String beforeId, int pageSize) {
+        int limit = pageSize + 1;
+        List<Order> rows = beforeDate == null
+            ? database.orderDao().getOrdersPageFirst(limit)
+            : database.orderDao().getOrdersPageAfter(beforeDate, beforeId, limit);
+        return toPage(rows, pageSize, order -> order.date, order -> order.id);
+    }
+    
+    public Page<Order> getOrdersBySupermarket(String supermarketId, Long beforeDate, String beforeId, int pageSize) {
+        int limit = pageSize + 1;
+        List<Order> rows = beforeDate == null
+            ? database.orderDao().getOrdersBySupermarketPageFirst(supermarketId, limit)
+            : database.orderDao().getOrdersBySupermarketPageAfter(supermarketId, beforeDate, beforeId, limit);
+        return toPage(rows, pageSize, order -> order.date, order -> order.id);
+    }
+    
+    public Page<Stock> getStock(Long beforeDate, String beforeId, int pageSize) {
+        int limit = pageSize + 1;
+        List<Stock> rows = beforeDate == null
+            ? database.stockDao().getStockPageFirst(limit)
+            : database.stockDao().getStockPageAfter(beforeDate, beforeId, limit);
+        return toPage(rows, pageSize, stock -> stock.date, stock -> stock.id);
+    }
+    
+    private interface KeyGetter<T, K> {
+        K get(T row);
+    }
+    
+    private static <T> Page<T> toPage(List<T> rows, int pageSize,
+                                      KeyGetter<T, Date> dateKey, KeyGetter<T, String> idKey) {
+        if (rows.isEmpty()) {
+            return Page.empty();
+        }
+        
+        // One extra row was requested to learn whether another page exists
+        boolean hasMore = rows.size() > pageSize;
+        List<T> items = hasMore ? rows.subList(0, pageSize) : rows;
+        T last = items.get(items.size() - 1);
+        Date lastDate = dateKey.get(last);
+        
+        // Rows without a date sort after every dated row and cannot be used as a cursor
+        if (lastDate == null) {
+            return new Page<>(items, false, null, null);
+        }
+        return new Page<>(items, hasMore, lastDate.getTime(), idKey.get(last));
+    }
+}
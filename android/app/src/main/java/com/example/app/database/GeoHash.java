@@ -0,0 +1,122 @@
+package com.example.app.database;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Geohash encoding and bounding-box cover used by the supermarket location index.
+ *
+ * A geohash prefix is a lat/lon rectangle, and every point inside it has a hash starting
+ * with that prefix, so "points in this cell" is a range scan on an indexed TEXT column.
+ */
+public final class GeoHash {
+    public static final int STORED_PRECISION = 9; // ~5m x 5m cells
+    
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+    private static final int MAX_COVER_CELLS = 16;
+    
+    private GeoHash() {
+        // Prevent instantiation
+    }
+    
+    public static String encode(double latitude, double longitude, int precision) {
+        double minLat = -90, maxLat = 90;
+        double minLon = -180, maxLon = 180;
+        StringBuilder hash = new StringBuilder(precision);
+        boolean evenBit = true;
+        int bit = 0;
+        int ch = 0;
+        
+        while (hash.length() < precision) {
+            if (evenBit) {
+                double mid = (minLon + maxLon) / 2;
+                if (longitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLon = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    ch = (ch << 1) | 1;
+                    minLat = mid;
+                } else {
+                    ch = ch << 1;
+                    maxLat = mid;
+                }
+            }
+            evenBit = !evenBit;
+            
+            if (++bit == 5) {
+                hash.append(BASE32[ch]);
+                bit = 0;
+                ch = 0;
+            }
+        }
+        return hash.toString();
+    }
+    
+    /**
+     * Geohash prefixes whose cells together cover the bounding box. The finest precision that
+     * needs at most MAX_COVER_CELLS cells is used, so the range scans stay few and tight.
+     */
+    public static Set<String> cover(double minLat, double minLon, double maxLat, double maxLon) {
+        minLat = clamp(minLat, -90, 90);
+        maxLat = clamp(maxLat, -90, 90);
+        minLon = clamp(minLon, -180, 180);
+        maxLon = clamp(maxLon, -180, 180);
+        
+        for (int precision = STORED_PRECISION; precision >= 1; precision--) {
+            double cellHeight = cellHeight(precision);
+            double cellWidth = cellWidth(precision);
+            long rows = (long) Math.floor(maxLat / cellHeight) - (long) Math.floor(minLat / cellHeight) + 1;
+            long columns = (long) Math.floor(maxLon / cellWidth) - (long) Math.floor(minLon / cellWidth) + 1;
+            if (rows * columns > MAX_COVER_CELLS) {
+                continue;
+            }
+            
+            Set<String> cells = new LinkedHashSet<>();
+            for (long r = 0; r < rows; r++) {
+                double lat = Math.min(minLat + r * cellHeight, maxLat);
+                for (long c = 0; c < columns; c++) {
+                    double lon = Math.min(minLon + c * cellWidth, maxLon);
+                    cells.add(encode(lat, lon, precision));
+                }
+                cells.add(encode(lat, maxLon, precision));
+            }
+            for (long c = 0; c < columns; c++) {
+                cells.add(encode(maxLat, Math.min(minLon + c * cellWidth, maxLon), precision));
+            }
+            cells.add(encode(maxLat, maxLon, precision));
+            return cells;
+        }
+        
+        // Box too large for any prefix: an empty prefix matches everything
+        Set<String> all = new LinkedHashSet<>();
+        all.add("");
+        return all;
+    }
+    
+    /**
+     * Exclusive upper bound of the hashes starting with the prefix ('{' sorts after 'z')
+     */
+    public static String rangeEnd(String prefix) {
+        return prefix + "{";
+    }
+    
+    private static double cellHeight(int precision) {
+        int latBits = (5 * precision) / 2;
+        return 180.0 / (1L << latBits);
+    }
+    
+    private static double cellWidth(int precision) {
+        int lonBits = (5 * precision + 1) / 2;
+        return 360.0 / (1L << lonBits);
+    }
+    
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
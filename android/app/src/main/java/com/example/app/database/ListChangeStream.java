@@ -0,0 +1,106 @@
+package com.example.app.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Change stream over an entity list that reports row-level differences.
+ * Rows are matched by key and compared by a content fingerprint, so the UI can update only
+ * the rows that were inserted, changed or removed.
+ */
+public class ListChangeStream<T> extends ChangeStream<ListChangeStream.Snapshot<T>, ListChangeStream.Diff<T>> {
+    
+    public interface ListQuery<T> {
+        List<T> run();
+    }
+    
+    public interface Selector<T> {
+        String select(T row);
+    }
+    
+    /**
+     * Query result indexed by key
+     */
+    public static class Snapshot<T> {
+        final List<T> rows;
+        final Map<String, String> fingerprints;
+        
+        Snapshot(List<T> rows, Map<String, String> fingerprints) {
+            this.rows = rows;
+            this.fingerprints = fingerprints;
+        }
+    }
+    
+    public static class Diff<T> {
+        public final List<T> current;      // Full result in query order
+        public final List<T> inserted;
+        public final List<T> updated;
+        public final List<String> removedKeys;
+        
+        Diff(List<T> current, List<T> inserted, List<T> updated, List<String> removedKeys) {
+            this.current = current;
+            this.inserted = inserted;
+            this.updated = updated;
+            this.removedKeys = removedKeys;
+        }
+        
+        public boolean isEmpty() {
+            return inserted.isEmpty() && updated.isEmpty() && removedKeys.isEmpty();
+        }
+    }
+    
+    private final ListQuery<T> listQuery;
+    private final Selector<T> key;
+    private final Selector<T> fingerprint;
+    
+    public ListChangeStream(AppDatabase database, ListQuery<T> listQuery,
+                            Selector<T> key, Selector<T> fingerprint, String... tables) {
+        super(database, tables);
+        this.listQuery = listQuery;
+        this.key = key;
+        this.fingerprint = fingerprint;
+    }
+    
+    @Override
+    protected Snapshot<T> query() {
+        List<T> rows = listQuery.run();
+        Map<String, String> fingerprints = new HashMap<>(rows.size() * 2);
+        for (T row : rows) {
+            fingerprints.put(key.select(row), fingerprint.select(row));
+        }
+        return new Snapshot<>(rows, fingerprints);
+    }
+    
+    @Override
+    protected Diff<T> diff(Snapshot<T> previous, Snapshot<T> current) {
+        if (previous == null) {
+            return new Diff<>(current.rows, current.rows,
+                Collections.<T>emptyList(), Collections.<String>emptyList());
+        }
+        
+        List<T> inserted = new ArrayList<>();
+        List<T> updated = new ArrayList<>();
+        for (T row : current.rows) {
+            String rowKey = key.select(row);
+            String oldFingerprint = previous.fingerprints.get(rowKey);
+            if (oldFingerprint == null) {
+                inserted.add(row);
+            } else if (!oldFingerprint.equals(current.fingerprints.get(rowKey))) {
+                updated.add(row);
+            }
+        }
+        
+        List<String> removedKeys = new ArrayList<>();
+        for (String oldKey : previous.fingerprints.keySet()) {
+            if (!current.fingerprints.containsKey(oldKey)) {
+                removedKeys.add(oldKey);
+            }
+        }
+        
+        Diff<T> diff = new Diff<>(current.rows, inserted, updated, removedKeys);
+        return diff.isEmpty() ? null : diff;
+    }
+}
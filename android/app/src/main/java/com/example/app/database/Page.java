@@ -0,0 +1,26 @@
+package com.example.app.database;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated list ordered by (date DESC, id DESC).
+ * Pass {@link #nextBeforeDate} and {@link #nextBeforeId} back to fetch the following page.
+ */
+public class Page<T> {
+    public final List<T> items;
+    public final boolean hasMore;
+    public final Long nextBeforeDate;
+    public final String nextBeforeId;
+    
+    public Page(List<T> items, boolean hasMore, Long nextBeforeDate, String nextBeforeId) {
+        this.items = items;
+        this.hasMore = hasMore;
+        this.nextBeforeDate = nextBeforeDate;
+        this.nextBeforeId = nextBeforeId;
+    }
+    
+    public static <T> Page<T> empty() {
+        return new Page<>(Collections.<T>emptyList(), false, null, null);
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.app.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.example.app.database.converter.PayloadCodec;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps the tables that cannot be downloaded again (the unsynced queue, temp id mappings and
+ * dead letters) across a destructive schema rebuild. Everything else is a cache of server data
+ * and is simply loaded again by the snapshot bootstrap.
+ *
+ * Before Room opens a database it has no migration path for, the preserved tables are copied
+ * into a side database. After the rebuild they are copied back column by column: columns that
+ * no longer exist are dropped, new NOT NULL columns get their type's zero value, and payloads
+ * from before the BLOB encoding are encoded.
+ */
+final class QueueCarryOver {
+    private static final String TAG = "QueueCarryOver";
+    private static final String SUFFIX = "-carryover";
+    private static final String[] TABLES = {"offline_queue", "id_mappings", "dead_letters"};
+
+    private QueueCarryOver() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Copy the preserved tables aside if the database on disk will be rebuilt
+     * @param oldestMigratedVersion First version with a migration path to the current one
+     */
+    static void save(Context context, String name, int version, int oldestMigratedVersion) {
+        File file = context.getDatabasePath(name);
+        if (!file.exists()) {
+            return;
+        }
+        File carry = context.getDatabasePath(name + SUFFIX);
+
+        SQLiteDatabase db = null;
+        try {
+            db = SQLiteDatabase.openDatabase(file.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+            int current = db.getVersion();
+            if (current == 0 || current == version || (current >= oldestMigratedVersion && current < version)) {
+                return;
+            }
+
+            deleteCarryFiles(carry);
+            db.execSQL("ATTACH DATABASE ? AS carry", new Object[] {carry.getPath()});
+            try {
+                for (String table : TABLES) {
+                    if (tableExists(db.rawQuery(tableExistsSql("main"), new String[] {table}))) {
+                        db.execSQL("CREATE TABLE carry.`" + table + "` AS SELECT * FROM main.`" + table + "`");
+                    }
+                }
+            } finally {
+                db.execSQL("DETACH DATABASE carry");
+            }
+            Log.i(TAG, "Saved queue tables before rebuilding schema version " + current);
+        } catch (Exception e) {
+            Log.e(TAG, "Could not save queue tables before the schema rebuild", e);
+            deleteCarryFiles(carry);
+        } finally {
+            if (db != null) {
+                db.close();
+            }
+        }
+    }
+
+    /**
+     * Copy saved rows into the rebuilt tables. Called on every open; a no-op unless a
+     * rebuild just happened. A failed restore is retried on the next open.
+     */
+    static void restore(Context context, String name, SupportSQLiteDatabase db) {
+        File carry = context.getDatabasePath(name + SUFFIX);
+        if (!carry.exists()) {
+            return;
+        }
+
+        boolean restored = false;
+        db.execSQL("ATTACH DATABASE ? AS carry", new Object[] {carry.getPath()});
+        try {
+            db.beginTransaction();
+            try {
+                for (String table : TABLES) {
+                    if (tableExists(db.query(tableExistsSql("carry"), new Object[] {table}))) {
+                        copyRows(db, table);
+                    }
+                }
+                db.setTransactionSuccessful();
+                restored = true;
+            } finally {
+                db.endTransaction();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Could not restore queue tables after the schema rebuild", e);
+        } finally {
+            db.execSQL("DETACH DATABASE carry");
+        }
+
+        if (restored) {
+            deleteCarryFiles(carry);
+            Log.i(TAG, "Restored queue tables after the schema rebuild");
+        }
+    }
+
+    private static void copyRows(SupportSQLiteDatabase db, String table) {
+        Set<String> saved = new HashSet<>();
+        try (Cursor cursor = db.query("PRAGMA carry.table_info(`" + table + "`)")) {
+            while (cursor.moveToNext()) {
+                saved.add(cursor.getString(cursor.getColumnIndexOrThrow("name")));
+            }
+        }
+
+        List<String> columns = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        boolean hasPayload = false;
+        try (Cursor cursor = db.query("PRAGMA main.table_info(`" + table + "`)")) {
+            while (cursor.moveToNext()) {
+                String column = cursor.getString(cursor.getColumnIndexOrThrow("name"));
+                boolean notNull = cursor.getInt(cursor.getColumnIndexOrThrow("notnull")) != 0;
+                boolean hasDefault = !cursor.isNull(cursor.getColumnIndexOrThrow("dflt_value"));
+                hasPayload |= "payload".equals(column);
+                if (saved.contains(column)) {
+                    columns.add("`" + column + "`");
+                    values.add("`" + column + "`");
+                } else if (notNull && !hasDefault) {
+                    columns.add("`" + column + "`");
+                    values.add(zeroValue(cursor.getString(cursor.getColumnIndexOrThrow("type"))));
+                }
+            }
+        }
+        if (columns.isEmpty()) {
+            return;
+        }
+
+        db.execSQL("INSERT INTO main.`" + table + "` (" + join(columns) + ") SELECT "
+            + join(values) + " FROM carry.`" + table + "`");
+
+        // Payloads were plain JSON in a data column before the BLOB encoding
+        if (hasPayload && saved.contains("data") && !saved.contains("payload")) {
+            try (Cursor cursor = db.query("SELECT id, data FROM carry.`" + table + "` WHERE data IS NOT NULL")) {
+                while (cursor.moveToNext()) {
+                    db.execSQL("UPDATE main.`" + table + "` SET payload = ? WHERE id = ?",
+                        new Object[] {PayloadCodec.encode(cursor.getString(1)), cursor.getLong(0)});
+                }
+            }
+        }
+    }
+
+    private static String tableExistsSql(String schema) {
+        return "SELECT 1 FROM " + schema + ".sqlite_master WHERE type = 'table' AND name = ?";
+    }
+
+    private static boolean tableExists(Cursor cursor) {
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static String zeroValue(String type) {
+        String affinity = type != null ? type.toUpperCase() : "";
+        if (affinity.contains("INT") || affinity.contains("REAL")) {
+            return "0";
+        } else if (affinity.contains("BLOB")) {
+            return "X''";
+        }
+        return "''";
+    }
+
+    private static String join(List<String> parts) {
+        StringBuilder builder = new StringBuilder();
+        for (String part : parts) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(part);
+        }
+        return builder.toString();
+    }
+
+    private static void deleteCarryFiles(File carry) {
+        carry.delete();
+        new File(carry.getPath() + "-journal").delete();
+        new File(carry.getPath() + "-wal").delete();
+        new File(carry.getPath() + "-shm").delete();
+    }
+}
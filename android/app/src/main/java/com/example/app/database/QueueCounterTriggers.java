@@ -0,0 +1,44 @@
+package com.example.app.database;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * SQLite triggers that keep queue_counters in step with every write to offline_queue, inside
+ * the same transaction as the write. The counters are rebuilt from the queue once per open
+ * so they are exact even if the app was killed between schema changes.
+ */
+final class QueueCounterTriggers {
+    private static final String KEY_MATCH = "status = IFNULL(%1$s.status, '') "
+        + "AND table_name = IFNULL(%1$s.table_name, '') AND priority = %1$s.priority";
+
+    private QueueCounterTriggers() {
+        // Prevent instantiation
+    }
+
+    static void install(SupportSQLiteDatabase db) {
+        db.execSQL("DELETE FROM queue_counters");
+        db.execSQL("INSERT INTO queue_counters (status, table_name, priority, count) "
+            + "SELECT IFNULL(status, ''), IFNULL(table_name, ''), priority, COUNT(*) FROM offline_queue GROUP BY 1, 2, 3");
+
+        // recursive_triggers (set by SummaryTriggers) makes INSERT OR REPLACE fire the delete trigger
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS queue_counters_insert AFTER INSERT ON offline_queue BEGIN "
+            + apply("NEW", "+")
+            + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS queue_counters_delete AFTER DELETE ON offline_queue BEGIN "
+            + apply("OLD", "-")
+            + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS queue_counters_update "
+            + "AFTER UPDATE OF status, table_name, priority ON offline_queue BEGIN "
+            + apply("OLD", "-")
+            + apply("NEW", "+")
+            + "END");
+    }
+
+    private static String apply(String row, String sign) {
+        String match = String.format(KEY_MATCH, row);
+        return "INSERT INTO queue_counters (status, table_name, priority, count) "
+                + "SELECT IFNULL(" + row + ".status, ''), IFNULL(" + row + ".table_name, ''), " + row + ".priority, 0 "
+                + "WHERE NOT EXISTS (SELECT 1 FROM queue_counters WHERE " + match + "); "
+            + "UPDATE queue_counters SET count = count " + sign + " 1 WHERE " + match + "; ";
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.app.database;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Text folding shared by the supermarket search index and its queries.
+ *
+ * Latin accents are stripped (é -> e), Arabic short vowels and tatweel are removed and common
+ * Arabic letter variants are unified (أ/إ/آ -> ا, ة -> ه, ى -> ي), so "Supérette" matches
+ * "superette" and "مَرْكَز" matches "مركز".
+ */
+public final class SearchText {
+    
+    private SearchText() {
+        // Prevent instantiation
+    }
+    
+    public static String normalize(String text) {
+        if (text == null) {
+            return null;
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder out = new StringBuilder(decomposed.length());
+        
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK || c == 'ـ') {
+                continue; // Combining accents, Arabic harakat, tatweel
+            }
+            switch (c) {
+                case 'أ': case 'إ': case 'آ': case 'ٱ':
+                    out.append('ا');
+                    break;
+                case 'ة':
+                    out.append('ه');
+                    break;
+                case 'ى':
+                    out.append('ي');
+                    break;
+                default:
+                    out.append(c);
+                    break;
+            }
+        }
+        return out.toString().toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * Build an FTS MATCH expression where every typed word is a prefix term,
+     * or null if the input contains nothing searchable
+     */
+    public static String toPrefixQuery(String input) {
+        String normalized = normalize(input);
+        if (normalized == null) {
+            return null;
+        }
+        
+        StringBuilder query = new StringBuilder();
+        for (String token : normalized.split("[^\\p{L}\\p{N}]+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            query.append(token).append('*');
+        }
+        return query.length() > 0 ? query.toString() : null;
+    }
+    
+    /**
+     * First searchable word of the input, used to rank name-prefix matches first
+     */
+    public static String firstToken(String input) {
+        String normalized = normalize(input);
+        if (normalized == null) {
+            return "";
+        }
+        for (String token : normalized.split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                return token;
+            }
+        }
+        return "";
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.app.database;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * SQLite triggers that keep the sales summary tables in step with every write to sales.
+ *
+ * Each summary row is adjusted by the delta of the inserted, deleted or updated sale, so the
+ * dashboard totals never require a scan of the sales history. INSERT OR REPLACE on sales
+ * removes the old row first, which only fires the delete trigger with recursive_triggers on.
+ */
+final class SummaryTriggers {
+    private static final String MONTH_KEY = "IFNULL(strftime('%%Y-%%m', %s.date / 1000, 'unixepoch'), '')";
+    private static final String SUPERMARKET_KEY = "IFNULL(%s.supermarket_id, '')";
+
+    private SummaryTriggers() {
+        // Prevent instantiation
+    }
+
+    static void install(SupportSQLiteDatabase db) {
+        db.execSQL("PRAGMA recursive_triggers = ON");
+
+        for (String[] summary : new String[][] {
+                {"sales_monthly_summary", "month", MONTH_KEY},
+                {"sales_supermarket_summary", "supermarket_id", SUPERMARKET_KEY}}) {
+            String table = summary[0];
+            String keyColumn = summary[1];
+            String keyExpr = summary[2];
+
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " + table + "_insert AFTER INSERT ON sales BEGIN "
+                + apply(table, keyColumn, String.format(keyExpr, "NEW"), "NEW", "+")
+                + "END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " + table + "_delete AFTER DELETE ON sales BEGIN "
+                + apply(table, keyColumn, String.format(keyExpr, "OLD"), "OLD", "-")
+                + "END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " + table + "_update AFTER UPDATE ON sales BEGIN "
+                + apply(table, keyColumn, String.format(keyExpr, "OLD"), "OLD", "-")
+                + apply(table, keyColumn, String.format(keyExpr, "NEW"), "NEW", "+")
+                + "END");
+        }
+    }
+
+    private static String apply(String table, String keyColumn, String key, String row, String sign) {
+        // Not INSERT OR IGNORE: the outer statement's conflict policy (e.g. REPLACE) would override it
+        return "INSERT INTO " + table + " (" + keyColumn
+                + ", sale_count, quantity, cartons, total_value, remaining_amount) SELECT " + key + ", 0, 0, 0, 0, 0 "
+                + "WHERE NOT EXISTS (SELECT 1 FROM " + table + " WHERE " + keyColumn + " = " + key + "); "
+            + "UPDATE " + table + " SET "
+                + "sale_count = sale_count " + sign + " 1, "
+                + "quantity = quantity " + sign + " " + row + ".quantity, "
+                + "cartons = cartons " + sign + " " + row + ".cartons, "
+                + "total_value = total_value " + sign + " " + row + ".total_value, "
+                + "remaining_amount = remaining_amount " + sign + " " + row + ".remaining_amount "
+                + "WHERE " + keyColumn + " = " + key + "; ";
+    }
+}
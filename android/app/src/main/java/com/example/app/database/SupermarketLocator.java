@@ -0,0 +1,104 @@
+package com.example.app.database;
+
+import com.example.app.database.dao.SupermarketDao;
+import com.example.app.database.entity.Supermarket;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Location queries over supermarkets backed by the indexed geohash column
+ */
+public class SupermarketLocator {
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double INITIAL_RADIUS_KM = 2.0;
+    private static final double MAX_RADIUS_KM = 500.0;
+    
+    private final SupermarketDao supermarketDao;
+    
+    public SupermarketLocator(AppDatabase database) {
+        this.supermarketDao = database.supermarketDao();
+    }
+    
+    public static class NearbySupermarket {
+        public final Supermarket supermarket;
+        public final double distanceKm;
+        
+        public NearbySupermarket(Supermarket supermarket, double distanceKm) {
+            this.supermarket = supermarket;
+            this.distanceKm = distanceKm;
+        }
+    }
+    
+    /**
+     * All supermarkets inside the bounding box, e.g. the corridor along a planned route
+     */
+    public List<Supermarket> findWithinBox(double minLat, double minLon, double maxLat, double maxLon) {
+        List<Supermarket> result = new ArrayList<>();
+        for (String prefix : GeoHash.cover(minLat, minLon, maxLat, maxLon)) {
+            result.addAll(supermarketDao.getSupermarketsInGeohashRange(
+                prefix, GeoHash.rangeEnd(prefix), minLat, maxLat, minLon, maxLon));
+        }
+        return result;
+    }
+    
+    /**
+     * The k supermarkets closest to the point, nearest first. The search box doubles until it
+     * holds k stores within its inscribed radius, which guarantees no closer store was missed.
+     */
+    public List<NearbySupermarket> findNearest(double latitude, double longitude, int k) {
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+        
+        for (double radiusKm = INITIAL_RADIUS_KM; radiusKm <= MAX_RADIUS_KM; radiusKm *= 2) {
+            double latDelta = Math.toDegrees(radiusKm / EARTH_RADIUS_KM);
+            double lonDelta = latDelta / Math.max(Math.cos(Math.toRadians(latitude)), 0.01);
+            
+            List<NearbySupermarket> inRadius = new ArrayList<>();
+            for (Supermarket supermarket : findWithinBox(latitude - latDelta, longitude - lonDelta,
+                                                         latitude + latDelta, longitude + lonDelta)) {
+                double distance = distanceKm(latitude, longitude, supermarket.latitude, supermarket.longitude);
+                if (distance <= radiusKm) {
+                    inRadius.add(new NearbySupermarket(supermarket, distance));
+                }
+            }
+            
+            if (inRadius.size() >= k) {
+                return nearestFirst(inRadius, k);
+            }
+        }
+        
+        // Sparse data: rank everything
+        List<NearbySupermarket> all = new ArrayList<>();
+        for (Supermarket supermarket : supermarketDao.getAllSupermarkets()) {
+            all.add(new NearbySupermarket(supermarket,
+                distanceKm(latitude, longitude, supermarket.latitude, supermarket.longitude)));
+        }
+        return nearestFirst(all, k);
+    }
+    
+    private static List<NearbySupermarket> nearestFirst(List<NearbySupermarket> candidates, int k) {
+        Collections.sort(candidates, new Comparator<NearbySupermarket>() {
+            @Override
+            public int compare(NearbySupermarket a, NearbySupermarket b) {
+                return Double.compare(a.distanceKm, b.distanceKm);
+            }
+        });
+        return candidates.size() > k ? new ArrayList<>(candidates.subList(0, k)) : candidates;
+    }
+    
+    /**
+     * Great-circle distance (haversine)
+     */
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+            + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+            * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.app.database;
+
+/**
+ * Change stream over a single value such as a queue counter; delivers only distinct values
+ */
+public class ValueChangeStream<T> extends ChangeStream<T, T> {
+    
+    public interface ValueQuery<T> {
+        T run();
+    }
+    
+    private final ValueQuery<T> valueQuery;
+    
+    public ValueChangeStream(AppDatabase database, ValueQuery<T> valueQuery, String... tables) {
+        super(database, tables);
+        this.valueQuery = valueQuery;
+    }
+    
+    @Override
+    protected T query() {
+        return valueQuery.run();
+    }
+    
+    @Override
+    protected T diff(T previous, T current) {
+        if (previous != null && previous.equals(current)) {
+            return null;
+        }
+        return current;
+    }
+}
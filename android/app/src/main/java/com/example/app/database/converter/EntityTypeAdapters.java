@@ -0,0 +1,427 @@
+package com.example.app.database.converter;
+
+import com.example.app.database.entity.Order;
+import com.example.app.database.entity.Sale;
+import com.example.app.database.entity.Stock;
+import com.example.app.database.entity.Supermarket;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Hand-written streaming Gson adapters for the entities and their JSON columns.
+ *
+ * Field names match the column names, null fields are omitted (so partial updates never
+ * clear server values) and the local sync bookkeeping columns are not serialized.
+ * Use {@link #GSON} instead of a reflective {@code new Gson()} for entity payloads.
+ */
+public final class EntityTypeAdapters {
+    public static final Type FRAGRANCE_MAP_TYPE = new TypeToken<Map<String, Integer>>() {}.getType();
+    public static final Type PHONE_NUMBER_LIST_TYPE = new TypeToken<List<JsonConverter.PhoneNumber>>() {}.getType();
+
+    public static final TypeAdapter<Map<String, Integer>> FRAGRANCE_MAP = new FragranceMapAdapter().nullSafe();
+    public static final TypeAdapter<List<JsonConverter.PhoneNumber>> PHONE_NUMBERS = new PhoneNumberListAdapter().nullSafe();
+    public static final TypeAdapter<Sale> SALE = new SaleAdapter().nullSafe();
+    public static final TypeAdapter<Order> ORDER = new OrderAdapter().nullSafe();
+    public static final TypeAdapter<Stock> STOCK = new StockAdapter().nullSafe();
+    public static final TypeAdapter<Supermarket> SUPERMARKET = new SupermarketAdapter().nullSafe();
+
+    public static final Gson GSON = new GsonBuilder()
+        .registerTypeAdapter(FRAGRANCE_MAP_TYPE, FRAGRANCE_MAP)
+        .registerTypeAdapter(PHONE_NUMBER_LIST_TYPE, PHONE_NUMBERS)
+        .registerTypeAdapter(Sale.class, SALE)
+        .registerTypeAdapter(Order.class, ORDER)
+        .registerTypeAdapter(Stock.class, STOCK)
+        .registerTypeAdapter(Supermarket.class, SUPERMARKET)
+        .create();
+
+    private static final ThreadLocal<SimpleDateFormat> ISO_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            return format;
+        }
+    };
+
+    private EntityTypeAdapters() {
+        // Prevent instantiation
+    }
+
+    private static class FragranceMapAdapter extends TypeAdapter<Map<String, Integer>> {
+        @Override
+        public void write(JsonWriter out, Map<String, Integer> map) throws IOException {
+            out.beginObject();
+            for (Map.Entry<String, Integer> entry : map.entrySet()) {
+                out.name(entry.getKey());
+                if (entry.getValue() == null) {
+                    out.nullValue();
+                } else {
+                    out.value(entry.getValue().intValue());
+                }
+            }
+            out.endObject();
+        }
+
+        @Override
+        public Map<String, Integer> read(JsonReader in) throws IOException {
+            Map<String, Integer> map = new LinkedHashMap<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                String key = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    map.put(key, null);
+                } else {
+                    map.put(key, in.nextInt());
+                }
+            }
+            in.endObject();
+            return map;
+        }
+    }
+
+    private static class PhoneNumberListAdapter extends TypeAdapter<List<JsonConverter.PhoneNumber>> {
+        @Override
+        public void write(JsonWriter out, List<JsonConverter.PhoneNumber> phoneNumbers) throws IOException {
+            out.beginArray();
+            for (JsonConverter.PhoneNumber phoneNumber : phoneNumbers) {
+                if (phoneNumber == null) {
+                    out.nullValue();
+                    continue;
+                }
+                out.beginObject();
+                writeString(out, "name", phoneNumber.name);
+                writeString(out, "number", phoneNumber.number);
+                out.endObject();
+            }
+            out.endArray();
+        }
+
+        @Override
+        public List<JsonConverter.PhoneNumber> read(JsonReader in) throws IOException {
+            List<JsonConverter.PhoneNumber> phoneNumbers = new ArrayList<>();
+            in.beginArray();
+            while (in.hasNext()) {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    phoneNumbers.add(null);
+                    continue;
+                }
+                JsonConverter.PhoneNumber phoneNumber = new JsonConverter.PhoneNumber();
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "name": phoneNumber.name = readString(in); break;
+                        case "number": phoneNumber.number = readString(in); break;
+                        default: in.skipValue(); break;
+                    }
+                }
+                in.endObject();
+                phoneNumbers.add(phoneNumber);
+            }
+            in.endArray();
+            return phoneNumbers;
+        }
+    }
+
+    private static class SaleAdapter extends TypeAdapter<Sale> {
+        @Override
+        public void write(JsonWriter out, Sale sale) throws IOException {
+            out.beginObject();
+            writeString(out, "id", sale.id);
+            writeString(out, "supermarket_id", sale.supermarketId);
+            writeDate(out, "date", sale.date);
+            out.name("quantity").value(sale.quantity);
+            out.name("cartons").value(sale.cartons);
+            out.name("price_per_unit").value(sale.pricePerUnit);
+            out.name("total_value").value(sale.totalValue);
+            out.name("is_paid").value(sale.isPaid);
+            writeDate(out, "payment_date", sale.paymentDate);
+            writeString(out, "payment_note", sale.paymentNote);
+            writeDate(out, "expected_payment_date", sale.expectedPaymentDate);
+            out.name("remaining_amount").value(sale.remainingAmount);
+            out.name("from_order").value(sale.fromOrder);
+            writeString(out, "note", sale.note);
+            if (sale.fragranceDistribution != null) {
+                FRAGRANCE_MAP.write(out.name("fragrance_distribution"), sale.fragranceDistribution);
+            }
+            writeDate(out, "created_at", sale.createdAt);
+            writeDate(out, "updated_at", sale.updatedAt);
+            out.endObject();
+        }
+
+        @Override
+        public Sale read(JsonReader in) throws IOException {
+            Sale sale = new Sale();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": sale.id = readString(in); break;
+                    case "supermarket_id": sale.supermarketId = readString(in); break;
+                    case "date": sale.date = readDate(in); break;
+                    case "quantity": sale.quantity = readInt(in); break;
+                    case "cartons": sale.cartons = readInt(in); break;
+                    case "price_per_unit": sale.pricePerUnit = readDouble(in); break;
+                    case "total_value": sale.totalValue = readDouble(in); break;
+                    case "is_paid": sale.isPaid = readBoolean(in); break;
+                    case "payment_date": sale.paymentDate = readDate(in); break;
+                    case "payment_note": sale.paymentNote = readString(in); break;
+                    case "expected_payment_date": sale.expectedPaymentDate = readDate(in); break;
+                    case "remaining_amount": sale.remainingAmount = readDouble(in); break;
+                    case "from_order": sale.fromOrder = readBoolean(in); break;
+                    case "note": sale.note = readString(in); break;
+                    case "fragrance_distribution": sale.fragranceDistribution = FRAGRANCE_MAP.read(in); break;
+                    case "created_at": sale.createdAt = readDate(in); break;
+                    case "updated_at": sale.updatedAt = readDate(in); break;
+                    default: in.skipValue(); break;
+                }
+            }
+            in.endObject();
+            return sale;
+        }
+    }
+
+    private static class OrderAdapter extends TypeAdapter<Order> {
+        @Override
+        public void write(JsonWriter out, Order order) throws IOException {
+            out.beginObject();
+            writeString(out, "id", order.id);
+            writeString(out, "supermarket_id", order.supermarketId);
+            writeDate(out, "date", order.date);
+            out.name("quantity").value(order.quantity);
+            writeString(out, "status", order.status);
+            out.name("price_per_unit").value(order.pricePerUnit);
+            writeDate(out, "created_at", order.createdAt);
+            writeDate(out, "updated_at", order.updatedAt);
+            out.endObject();
+        }
+
+        @Override
+        public Order read(JsonReader in) throws IOException {
+            Order order = new Order();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": order.id = readString(in); break;
+                    case "supermarket_id": order.supermarketId = readString(in); break;
+                    case "date": order.date = readDate(in); break;
+                    case "quantity": order.quantity = readInt(in); break;
+                    case "status": order.status = readString(in); break;
+                    case "price_per_unit": order.pricePerUnit = readDouble(in); break;
+                    case "created_at": order.createdAt = readDate(in); break;
+                    case "updated_at": order.updatedAt = readDate(in); break;
+                    default: in.skipValue(); break;
+                }
+            }
+            in.endObject();
+            return order;
+        }
+    }
+
+    private static class StockAdapter extends TypeAdapter<Stock> {
+        @Override
+        public void write(JsonWriter out, Stock stock) throws IOException {
+            out.beginObject();
+            writeString(out, "id", stock.id);
+            writeDate(out, "date", stock.date);
+            writeString(out, "type", stock.type);
+            out.name("quantity").value(stock.quantity);
+            out.name("current_stock").value(stock.currentStock);
+            writeString(out, "reason", stock.reason);
+            if (stock.fragranceDistribution != null) {
+                FRAGRANCE_MAP.write(out.name("fragrance_distribution"), stock.fragranceDistribution);
+            }
+            writeDate(out, "created_at", stock.createdAt);
+            writeDate(out, "updated_at", stock.updatedAt);
+            out.endObject();
+        }
+
+        @Override
+        public Stock read(JsonReader in) throws IOException {
+            Stock stock = new Stock();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": stock.id = readString(in); break;
+                    case "date": stock.date = readDate(in); break;
+                    case "type": stock.type = readString(in); break;
+                    case "quantity": stock.quantity = readInt(in); break;
+                    case "current_stock": stock.currentStock = readInt(in); break;
+                    case "reason": stock.reason = readString(in); break;
+                    case "fragrance_distribution": stock.fragranceDistribution = FRAGRANCE_MAP.read(in); break;
+                    case "created_at": stock.createdAt = readDate(in); break;
+                    case "updated_at": stock.updatedAt = readDate(in); break;
+                    default: in.skipValue(); break;
+                }
+            }
+            in.endObject();
+            return stock;
+        }
+    }
+
+    private static class SupermarketAdapter extends TypeAdapter<Supermarket> {
+        @Override
+        public void write(JsonWriter out, Supermarket supermarket) throws IOException {
+            out.beginObject();
+            writeString(out, "id", supermarket.id);
+            writeString(out, "name", supermarket.name);
+            writeString(out, "address", supermarket.address);
+            out.name("latitude").value(supermarket.latitude);
+            out.name("longitude").value(supermarket.longitude);
+            writeString(out, "email", supermarket.email);
+            if (supermarket.phoneNumbers != null) {
+                PHONE_NUMBERS.write(out.name("phone_numbers"), supermarket.phoneNumbers);
+            }
+            writeDate(out, "created_at", supermarket.createdAt);
+            writeDate(out, "updated_at", supermarket.updatedAt);
+            out.endObject();
+        }
+
+        @Override
+        public Supermarket read(JsonReader in) throws IOException {
+            Supermarket supermarket = new Supermarket();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id": supermarket.id = readString(in); break;
+                    case "name": supermarket.name = readString(in); break;
+                    case "address": supermarket.address = readString(in); break;
+                    case "latitude": supermarket.latitude = readDouble(in); break;
+                    case "longitude": supermarket.longitude = readDouble(in); break;
+                    case "email": supermarket.email = readString(in); break;
+                    case "phone_numbers": supermarket.phoneNumbers = PHONE_NUMBERS.read(in); break;
+                    case "created_at": supermarket.createdAt = readDate(in); break;
+                    case "updated_at": supermarket.updatedAt = readDate(in); break;
+                    default: in.skipValue(); break;
+                }
+            }
+            in.endObject();
+            return supermarket;
+        }
+    }
+
+    // Field helpers
+
+    private static void writeString(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    private static void writeDate(JsonWriter out, String name, Date value) throws IOException {
+        if (value != null) {
+            out.name(name).value(formatDate(value));
+        }
+    }
+
+    private static String readString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static int readInt(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return 0;
+        }
+        return (int) in.nextDouble();
+    }
+
+    private static double readDouble(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return 0;
+        }
+        return in.nextDouble();
+    }
+
+    private static boolean readBoolean(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return false;
+        }
+        return in.nextBoolean();
+    }
+
+    private static Date readDate(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token == JsonToken.NUMBER) {
+            return new Date(in.nextLong());
+        }
+        return parseDate(in.nextString());
+    }
+
+    public static String formatDate(Date date) {
+        return ISO_FORMAT.get().format(date);
+    }
+
+    /**
+     * Parse an ISO-8601 timestamp as written by this app or returned by PostgREST
+     * (e.g. {@code 2024-05-01T10:00:00.123456+01:00} or a date-only value)
+     */
+    public static Date parseDate(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        if (value.length() == 10) {
+            value = value + "T00:00:00.000Z";
+        }
+
+        int zoneStart = -1;
+        for (int i = 19; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == 'Z' || c == '+' || c == '-') {
+                zoneStart = i;
+                break;
+            }
+        }
+        String local = zoneStart > 0 ? value.substring(0, zoneStart) : value;
+        long offsetMillis = zoneStart > 0 ? parseOffset(value.substring(zoneStart)) : 0;
+
+        int dot = local.indexOf('.', 19);
+        String seconds = dot > 0 ? local.substring(0, dot) : local;
+        String fraction = dot > 0 ? (local.substring(dot + 1) + "000").substring(0, 3) : "000";
+
+        try {
+            Date utc = ISO_FORMAT.get().parse(seconds + "." + fraction + "Z");
+            return new Date(utc.getTime() - offsetMillis);
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    private static long parseOffset(String zone) {
+        if (zone.startsWith("Z") || zone.length() < 3) {
+            return 0;
+        }
+        int sign = zone.charAt(0) == '-' ? -1 : 1;
+        String digits = zone.substring(1).replace(":", "");
+        int hours = Integer.parseInt(digits.substring(0, 2));
+        int minutes = digits.length() >= 4 ? Integer.parseInt(digits.substring(2, 4)) : 0;
+        return sign * (hours * 3_600_000L + minutes * 60_000L);
+    }
+}
@@ -2,22 +2,19 @@ package com.example.app.database.converter;
 
 import androidx.room.TypeConverter;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-
-import java.lang.reflect.Type;
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
 public class JsonConverter {
-    private static final Gson gson = new Gson();
+    // Adapters and their Type tokens are built once in EntityTypeAdapters, not per row
 
     @TypeConverter
     public static String fromMap(Map<String, Integer> map) {
         if (map == null) {
             return null;
         }
-        return gson.toJson(map);
+        return EntityTypeAdapters.FRAGRANCE_MAP.toJson(map);
     }
 
     @TypeConverter
@@ -25,8 +22,11 @@ public class JsonConverter {
         if (data == null) {
             return null;
         }
-        Type type = new TypeToken<Map<String, Integer>>() {}.getType();
-        return gson.fromJson(data, type);
+        try {
+            return EntityTypeAdapters.FRAGRANCE_MAP.fromJson(data);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid fragrance distribution JSON", e);
+        }
     }
 
     @TypeConverter
@@ -34,7 +34,7 @@ public class JsonConverter {
         if (phoneNumbers == null) {
             return null;
         }
-        return gson.toJson(phoneNumbers);
+        return EntityTypeAdapters.PHONE_NUMBERS.toJson(phoneNumbers);
     }
 
     @TypeConverter
@@ -42,8 +42,11 @@ public class JsonConverter {
         if (data == null) {
             return null;
         }
-        Type type = new TypeToken<List<PhoneNumber>>() {}.getType();
-        return gson.fromJson(data, type);
+        try {
+            return EntityTypeAdapters.PHONE_NUMBERS.fromJson(data);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid phone numbers JSON", e);
+        }
     }
 
     // PhoneNumber class for JSON conversion
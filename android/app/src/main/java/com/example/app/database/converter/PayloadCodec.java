@@ -0,0 +1,100 @@
+package com.example.app.database.converter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact storage encoding for offline queue payloads.
+ *
+ * Layout: one format byte followed by the body. {@link #FORMAT_RAW} stores UTF-8 JSON as is
+ * and is used for short payloads where DEFLATE would not pay for its header;
+ * {@link #FORMAT_DEFLATE} stores raw DEFLATE-compressed UTF-8 JSON.
+ */
+public final class PayloadCodec {
+    public static final byte FORMAT_RAW = 0x00;
+    public static final byte FORMAT_DEFLATE = 0x01;
+
+    private static final int MIN_COMPRESS_LENGTH = 96;
+
+    private PayloadCodec() {
+        // Prevent instantiation
+    }
+
+    public static byte[] encode(String json) {
+        if (json == null) {
+            return null;
+        }
+        byte[] utf8 = json.getBytes(StandardCharsets.UTF_8);
+
+        if (utf8.length >= MIN_COMPRESS_LENGTH) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+            try {
+                deflater.setInput(utf8);
+                deflater.finish();
+
+                ByteArrayOutputStream out = new ByteArrayOutputStream(utf8.length / 2 + 1);
+                out.write(FORMAT_DEFLATE);
+                byte[] buffer = new byte[512];
+                while (!deflater.finished()) {
+                    int count = deflater.deflate(buffer);
+                    out.write(buffer, 0, count);
+                }
+
+                // Only keep the compressed form if it actually saves space
+                if (out.size() < utf8.length + 1) {
+                    return out.toByteArray();
+                }
+            } finally {
+                deflater.end();
+            }
+        }
+
+        byte[] raw = new byte[utf8.length + 1];
+        raw[0] = FORMAT_RAW;
+        System.arraycopy(utf8, 0, raw, 1, utf8.length);
+        return raw;
+    }
+
+    public static String decode(byte[] payload) {
+        if (payload == null) {
+            return null;
+        }
+        if (payload.length == 0) {
+            return "";
+        }
+
+        switch (payload[0]) {
+            case FORMAT_RAW:
+                return new String(payload, 1, payload.length - 1, StandardCharsets.UTF_8);
+            case FORMAT_DEFLATE:
+                return inflate(payload);
+            default:
+                throw new IllegalArgumentException("Unknown payload format: " + payload[0]);
+        }
+    }
+
+    private static String inflate(byte[] payload) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(payload, 1, payload.length - 1);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length * 3);
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                out.write(buffer, 0, count);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt payload", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.app.database.converter;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the id-like string values in an offline queue payload, built once when the
+ * payload is written so dependency ordering never has to inflate and parse pending payloads.
+ *
+ * Stored as the distinct values joined by single spaces. A value qualifies when it is a JSON
+ * string of at most {@link #MAX_ID_LENGTH} characters without whitespace, which covers every
+ * record id and keeps free text such as notes out of the index.
+ */
+public final class PayloadReferences {
+    static final int MAX_ID_LENGTH = 64;
+
+    private static final String SEPARATOR = " ";
+    private static final String[] NONE = new String[0];
+
+    private PayloadReferences() {
+        // Prevent instantiation
+    }
+
+    /**
+     * @return The index for a JSON payload, "" if it holds no id-like value, null if it does not parse
+     */
+    public static String index(String json) {
+        if (json == null || json.isEmpty()) {
+            return "";
+        }
+        Set<String> values = new LinkedHashSet<>();
+        try {
+            ArrayDeque<JsonElement> stack = new ArrayDeque<>();
+            stack.push(JsonParser.parseString(json));
+            while (!stack.isEmpty()) {
+                JsonElement element = stack.pop();
+                if (element.isJsonObject()) {
+                    for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                        stack.push(entry.getValue());
+                    }
+                } else if (element.isJsonArray()) {
+                    for (JsonElement child : element.getAsJsonArray()) {
+                        stack.push(child);
+                    }
+                } else if (element.isJsonPrimitive() && element.getAsJsonPrimitive().isString()) {
+                    String value = element.getAsString();
+                    if (isIdLike(value)) {
+                        values.add(value);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            return null;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (String value : values) {
+            if (builder.length() > 0) {
+                builder.append(SEPARATOR);
+            }
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Split a stored index back into its values
+     */
+    public static String[] parse(String index) {
+        if (index == null || index.isEmpty()) {
+            return NONE;
+        }
+        return index.split(SEPARATOR);
+    }
+
+    private static boolean isIdLike(String value) {
+        if (value.isEmpty() || value.length() > MAX_ID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.isWhitespace(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.app.database.dao;
+
+import androidx.room.Dao;
+import androidx.room.Delete;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import com.example.app.database.entity.DeadLetterItem;
+
+import java.util.List;
+
+@Dao
+public interface DeadLetterDao {
+    @Query("SELECT * FROM dead_letters ORDER BY failed_at DESC LIMIT :limit")
+    List<DeadLetterItem> getDeadLetters(int limit);
+    
+    /**
+     * Oldest first, so a replay keeps the original operation order
+     * @param tableName null for every table
+     */
+    @Query("SELECT * FROM dead_letters WHERE (:tableName IS NULL OR table_name = :tableName) " +
+           "AND last_status_code BETWEEN :minStatusCode AND :maxStatusCode " +
+           "ORDER BY created_at ASC, id ASC LIMIT :limit")
+    List<DeadLetterItem> getMatching(String tableName, int minStatusCode, int maxStatusCode, int limit);
+    
+    @Query("SELECT * FROM dead_letters")
+    List<DeadLetterItem> getAllDeadLetters();
+    
+    @Query("SELECT COUNT(*) FROM dead_letters")
+    int getCount();
+    
+    @Insert
+    void insertDeadLetter(DeadLetterItem item);
+    
+    @Delete
+    void deleteDeadLetters(List<DeadLetterItem> items);
+    
+    /**
+     * @param tableName null for every table
+     */
+    @Query("DELETE FROM dead_letters WHERE (:tableName IS NULL OR table_name = :tableName) " +
+           "AND last_status_code BETWEEN :minStatusCode AND :maxStatusCode")
+    int deleteMatching(String tableName, int minStatusCode, int maxStatusCode);
+}
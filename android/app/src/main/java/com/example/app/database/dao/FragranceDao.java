@@ -0,0 +1,42 @@
+package com.example.app.database.dao;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import com.example.app.database.entity.SaleFragrance;
+import com.example.app.database.entity.StockFragrance;
+
+import java.util.List;
+
+/**
+ * Per-fragrance aggregates over the normalized sale_fragrances / stock_fragrances tables
+ */
+@Dao
+public interface FragranceDao {
+    @Query("SELECT fragrance_id, SUM(qty) AS quantity FROM sale_fragrances " +
+           "WHERE date >= :fromDate AND date < :toDate GROUP BY fragrance_id")
+    List<FragranceTotal> getUnitsSoldPerFragrance(long fromDate, long toDate);
+    
+    @Query("SELECT fragrance_id, SUM(qty) AS quantity FROM sale_fragrances GROUP BY fragrance_id")
+    List<FragranceTotal> getTotalUnitsSoldPerFragrance();
+    
+    // Same sign convention as the web app: removed subtracts, added and adjusted apply as given
+    @Query("SELECT fragrance_id, SUM(CASE type WHEN 'removed' THEN -qty ELSE qty END) AS quantity " +
+           "FROM stock_fragrances GROUP BY fragrance_id")
+    List<FragranceTotal> getStockPerFragrance();
+    
+    @Query("SELECT * FROM sale_fragrances WHERE sale_id = :saleId")
+    List<SaleFragrance> getSaleFragrances(String saleId);
+    
+    @Query("SELECT * FROM stock_fragrances WHERE stock_id = :stockId")
+    List<StockFragrance> getStockFragrances(String stockId);
+    
+    class FragranceTotal {
+        @ColumnInfo(name = "fragrance_id")
+        public String fragranceId;
+        
+        @ColumnInfo(name = "quantity")
+        public int quantity;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.app.database.dao;
+
+import androidx.room.Dao;
+import androidx.room.Delete;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.example.app.database.entity.IdMapping;
+
+import java.util.List;
+
+@Dao
+public interface IdMappingDao {
+    @Query("SELECT * FROM id_mappings")
+    List<IdMapping> getAllMappings();
+    
+    @Query("SELECT * FROM id_mappings WHERE temp_id = :tempId")
+    IdMapping getMapping(String tempId);
+    
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertMapping(IdMapping mapping);
+    
+    @Query("DELETE FROM id_mappings WHERE created_at < :cutoff")
+    void deleteMappingsOlderThan(long cutoff);
+    
+    @Query("SELECT * FROM id_mappings WHERE created_at < :cutoff")
+    List<IdMapping> getMappingsOlderThan(long cutoff);
+    
+    @Delete
+    void deleteMappings(List<IdMapping> mappings);
+}
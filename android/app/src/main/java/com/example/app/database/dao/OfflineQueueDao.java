@@ -5,6 +5,7 @@ import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
 import com.example.app.database.entity.OfflineQueueItem;
@@ -25,9 +26,26 @@ public interface OfflineQueueDao {
     @Query("SELECT COUNT(*) FROM offline_queue WHERE status = 'pending'")
     int getPendingCount();
     
+    /**
+     * Items for one record that are still waiting to be sent or in flight; completed items kept
+     * for cleanup do not count
+     */
+    @Query("SELECT COUNT(*) FROM offline_queue WHERE table_name = :tableName AND record_id = :recordId " +
+           "AND status IN ('pending', 'processing')")
+    int getUnsentCountForRecord(String tableName, String recordId);
+    
     @Query("SELECT COUNT(*) FROM offline_queue WHERE status = 'failed'")
     int getFailedCount();
     
+    @Query("SELECT COUNT(*) FROM offline_queue WHERE status IN ('pending', 'processing', 'failed')")
+    int getQueueSize();
+    
+    @Query("SELECT * FROM offline_queue WHERE status = 'pending' ORDER BY table_name, record_id, created_at ASC, id ASC")
+    List<OfflineQueueItem> getPendingItemsByRecord();
+    
+    @Query("SELECT * FROM offline_queue WHERE status = 'pending' AND priority >= :minPriority ORDER BY priority DESC, created_at ASC LIMIT 1")
+    OfflineQueueItem getOldestDroppableItem(int minPriority);
+    
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insertItem(OfflineQueueItem item);
     
@@ -37,6 +55,9 @@ public interface OfflineQueueDao {
     @Delete
     void deleteItem(OfflineQueueItem item);
     
+    @Delete
+    void deleteItems(List<OfflineQueueItem> items);
+    
     @Query("DELETE FROM offline_queue WHERE status = 'completed'")
     void deleteCompletedItems();
     
@@ -45,6 +66,93 @@ public interface OfflineQueueDao {
     
     @Query("UPDATE offline_queue SET status = :status, error_message = :errorMessage WHERE id = :id")
     void updateErrorStatus(int id, String status, String errorMessage);
+    
+    @Query("UPDATE offline_queue SET record_id = :serverId WHERE table_name = :tableName AND record_id = :tempId AND status != 'completed'")
+    void remapRecordId(String tableName, String tempId, String serverId);
+    
+    @Query("SELECT * FROM offline_queue WHERE status != 'completed'")
+    List<OfflineQueueItem> getActiveItems();
+    
+    @Query("UPDATE offline_queue SET status = 'processing', lease_owner = :owner, lease_expires_at = :expiresAt " +
+           "WHERE id IN (:ids) AND status = 'pending'")
+    int leaseItems(List<Integer> ids, String owner, long expiresAt);
+    
+    @Query("SELECT * FROM offline_queue WHERE id IN (:ids) AND status = 'processing' AND lease_owner = :owner")
+    List<OfflineQueueItem> getLeasedItems(List<Integer> ids, String owner);
+    
+    /**
+     * Atomically take the still-pending items among ids; items another worker holds are skipped
+     */
+    @Transaction
+    default List<OfflineQueueItem> claimItems(List<Integer> ids, String owner, long expiresAt) {
+        leaseItems(ids, owner, expiresAt);
+        return getLeasedItems(ids, owner);
+    }
+    
+    /**
+     * Extend the owner's lease on an item
+     * @return 0 if the lease was lost to the sweeper
+     */
+    @Query("UPDATE offline_queue SET lease_expires_at = :expiresAt " +
+           "WHERE id = :id AND status = 'processing' AND lease_owner = :owner")
+    int renewLease(int id, String owner, long expiresAt);
+    
+    /**
+     * Move an item from the worker's lease to a retry lease covering the backoff, saving the
+     * attempt history
+     * @return 0 if the lease was lost to the sweeper or the item is gone
+     */
+    @Query("UPDATE offline_queue SET lease_owner = :retryOwner, lease_expires_at = :expiresAt, " +
+           "attempt_history = :attemptHistory " +
+           "WHERE id = :id AND status = 'processing' AND lease_owner = :owner")
+    int holdForRetry(int id, String owner, String retryOwner, long expiresAt, String attemptHistory);
+    
+    /**
+     * Return an item held through its retry backoff to pending, leaving every other column as
+     * it is now (the remapper may have rewritten record_id or payload meanwhile)
+     * @return 0 if the lease was lost to the sweeper or the item is gone
+     */
+    @Query("UPDATE offline_queue SET status = 'pending', lease_owner = NULL, lease_expires_at = NULL, " +
+           "retry_count = retry_count + 1, last_retry = :lastRetry " +
+           "WHERE id = :id AND status = 'processing' AND lease_owner = :owner")
+    int releaseRetryLease(int id, String owner, long lastRetry);
+    
+    @Query("SELECT * FROM offline_queue WHERE status = 'processing' AND lease_owner = :owner")
+    List<OfflineQueueItem> getItemsLeasedBy(String owner);
+    
+    @Query("UPDATE offline_queue SET status = 'pending', lease_owner = NULL, lease_expires_at = NULL " +
+           "WHERE status = 'processing' AND lease_owner = :owner")
+    int releaseLeases(String owner);
+    
+    /**
+     * Hand back every item the owner still holds, e.g. the rest of a batch after a cancel
+     * @return The released items as they were before the release
+     */
+    @Transaction
+    default List<OfflineQueueItem> releaseLeasedItems(String owner) {
+        List<OfflineQueueItem> items = getItemsLeasedBy(owner);
+        releaseLeases(owner);
+        return items;
+    }
+    
+    @Query("SELECT * FROM offline_queue WHERE status = 'processing' " +
+           "AND (lease_expires_at IS NULL OR lease_expires_at < :now)")
+    List<OfflineQueueItem> getExpiredLeases(long now);
+    
+    @Query("UPDATE offline_queue SET status = 'pending', lease_owner = NULL, lease_expires_at = NULL " +
+           "WHERE status = 'processing' AND (lease_expires_at IS NULL OR lease_expires_at < :now)")
+    int reclaimExpiredLeases(long now);
+    
+    /**
+     * Return processing items with an expired (or no) lease to pending
+     * @return The reclaimed items as they were before the reclaim
+     */
+    @Transaction
+    default List<OfflineQueueItem> reclaimExpiredItems(long now) {
+        List<OfflineQueueItem> items = getExpiredLeases(now);
+        reclaimExpiredLeases(now);
+        return items;
+    }
 }
 
 
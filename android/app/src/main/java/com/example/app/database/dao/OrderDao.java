@@ -16,6 +16,22 @@ public interface OrderDao {
     @Query("SELECT * FROM orders ORDER BY date DESC")
     List<Order> getAllOrders();
     
+    // Keyset pagination on (date, id), newest first; pass the last row of a page as the cursor
+    @Query("SELECT * FROM orders ORDER BY date DESC, id DESC LIMIT :limit")
+    List<Order> getOrdersPageFirst(int limit);
+    
+    @Query("SELECT * FROM orders WHERE date <= :beforeDate AND (date < :beforeDate OR id < :beforeId) " +
+           "ORDER BY date DESC, id DESC LIMIT :limit")
+    List<Order> getOrdersPageAfter(long beforeDate, String beforeId, int limit);
+    
+    @Query("SELECT * FROM orders WHERE supermarket_id = :supermarketId ORDER BY date DESC, id DESC LIMIT :limit")
+    List<Order> getOrdersBySupermarketPageFirst(String supermarketId, int limit);
+    
+    @Query("SELECT * FROM orders WHERE supermarket_id = :supermarketId " +
+           "AND date <= :beforeDate AND (date < :beforeDate OR id < :beforeId) " +
+           "ORDER BY date DESC, id DESC LIMIT :limit")
+    List<Order> getOrdersBySupermarketPageAfter(String supermarketId, long beforeDate, String beforeId, int limit);
+    
     @Query("SELECT * FROM orders WHERE sync_status = :status")
     List<Order> getOrdersBySyncStatus(String status);
     
@@ -45,6 +61,12 @@ public interface OrderDao {
     
     @Query("SELECT COUNT(*) FROM orders WHERE sync_status = 'pending'")
     int getPendingSyncCount();
+    
+    @Query("UPDATE orders SET id = :serverId WHERE id = :tempId")
+    void remapId(String tempId, String serverId);
+    
+    @Query("UPDATE orders SET supermarket_id = :serverId WHERE supermarket_id = :tempId")
+    void remapSupermarketId(String tempId, String serverId);
 }
 
 
@@ -0,0 +1,31 @@
+package com.example.app.database.dao;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.example.app.database.entity.QueueCounter;
+
+import java.util.List;
+
+@Dao
+public interface QueueCounterDao {
+    @Query("SELECT * FROM queue_counters WHERE count != 0")
+    List<QueueCounter> getCounters();
+    
+    @Query("DELETE FROM queue_counters")
+    void clearCounters();
+    
+    @Query("INSERT INTO queue_counters (status, table_name, priority, count) " +
+           "SELECT IFNULL(status, ''), IFNULL(table_name, ''), priority, COUNT(*) FROM offline_queue GROUP BY 1, 2, 3")
+    void fillCounters();
+    
+    /**
+     * Recompute the counters from the queue table
+     */
+    @Transaction
+    default void rebuildCounters() {
+        clearCounters();
+        fillCounters();
+    }
+}
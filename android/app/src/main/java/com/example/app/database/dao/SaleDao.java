@@ -5,17 +5,38 @@ import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
+import com.example.app.database.EntityCache;
 import com.example.app.database.entity.Sale;
+import com.example.app.database.entity.SaleFragrance;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @Dao
 public interface SaleDao {
     @Query("SELECT * FROM sales ORDER BY date DESC")
     List<Sale> getAllSales();
     
+    // Keyset pagination on (date, id), newest first; pass the last row of a page as the cursor
+    @Query("SELECT * FROM sales ORDER BY date DESC, id DESC LIMIT :limit")
+    List<Sale> getSalesPageFirst(int limit);
+    
+    @Query("SELECT * FROM sales WHERE date <= :beforeDate AND (date < :beforeDate OR id < :beforeId) " +
+           "ORDER BY date DESC, id DESC LIMIT :limit")
+    List<Sale> getSalesPageAfter(long beforeDate, String beforeId, int limit);
+    
+    @Query("SELECT * FROM sales WHERE supermarket_id = :supermarketId ORDER BY date DESC, id DESC LIMIT :limit")
+    List<Sale> getSalesBySupermarketPageFirst(String supermarketId, int limit);
+    
+    @Query("SELECT * FROM sales WHERE supermarket_id = :supermarketId " +
+           "AND date <= :beforeDate AND (date < :beforeDate OR id < :beforeId) " +
+           "ORDER BY date DESC, id DESC LIMIT :limit")
+    List<Sale> getSalesBySupermarketPageAfter(String supermarketId, long beforeDate, String beforeId, int limit);
+    
     @Query("SELECT * FROM sales WHERE sync_status = :status")
     List<Sale> getSalesBySyncStatus(String status);
     
@@ -29,10 +50,53 @@ public interface SaleDao {
     List<Sale> getUnpaidSales();
     
     @Insert(onConflict = OnConflictStrategy.REPLACE)
-    void insertSale(Sale sale);
+    void insertSaleRow(Sale sale);
     
     @Update
-    void updateSale(Sale sale);
+    void updateSaleRow(Sale sale);
+    
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertFragranceLines(List<SaleFragrance> lines);
+    
+    @Query("DELETE FROM sale_fragrances WHERE sale_id = :saleId")
+    void deleteFragranceLines(String saleId);
+    
+    /**
+     * Insert or replace a sale and its sale_fragrances rows in one transaction
+     */
+    @Transaction
+    default void insertSale(Sale sale) {
+        insertSaleRow(sale);
+        replaceFragranceLines(sale);
+        EntityCache.evict("sales", sale.id);
+    }
+    
+    @Transaction
+    default void updateSale(Sale sale) {
+        updateSaleRow(sale);
+        replaceFragranceLines(sale);
+        EntityCache.evict("sales", sale.id);
+    }
+    
+    default void replaceFragranceLines(Sale sale) {
+        deleteFragranceLines(sale.id);
+        if (sale.fragranceDistribution == null || sale.fragranceDistribution.isEmpty()) {
+            return;
+        }
+        List<SaleFragrance> lines = new ArrayList<>(sale.fragranceDistribution.size());
+        for (Map.Entry<String, Integer> entry : sale.fragranceDistribution.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            SaleFragrance line = new SaleFragrance();
+            line.saleId = sale.id;
+            line.fragranceId = entry.getKey();
+            line.qty = entry.getValue();
+            line.date = sale.date != null ? sale.date.getTime() : null;
+            lines.add(line);
+        }
+        insertFragranceLines(lines);
+    }
     
     @Delete
     void deleteSale(Sale sale);
@@ -45,6 +109,12 @@ public interface SaleDao {
     
     @Query("SELECT COUNT(*) FROM sales WHERE sync_status = 'pending'")
     int getPendingSyncCount();
+    
+    @Query("UPDATE sales SET id = :serverId WHERE id = :tempId")
+    void remapId(String tempId, String serverId);
+    
+    @Query("UPDATE sales SET supermarket_id = :serverId WHERE supermarket_id = :tempId")
+    void remapSupermarketId(String tempId, String serverId);
 }
 
 
@@ -5,17 +5,30 @@ import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
+import com.example.app.database.EntityCache;
 import com.example.app.database.entity.Stock;
+import com.example.app.database.entity.StockFragrance;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @Dao
 public interface StockDao {
     @Query("SELECT * FROM stock ORDER BY date DESC")
     List<Stock> getAllStock();
     
+    // Keyset pagination on (date, id), newest first; pass the last row of a page as the cursor
+    @Query("SELECT * FROM stock ORDER BY date DESC, id DESC LIMIT :limit")
+    List<Stock> getStockPageFirst(int limit);
+    
+    @Query("SELECT * FROM stock WHERE date <= :beforeDate AND (date < :beforeDate OR id < :beforeId) " +
+           "ORDER BY date DESC, id DESC LIMIT :limit")
+    List<Stock> getStockPageAfter(long beforeDate, String beforeId, int limit);
+    
     @Query("SELECT * FROM stock WHERE sync_status = :status")
     List<Stock> getStockBySyncStatus(String status);
     
@@ -29,10 +42,54 @@ public interface StockDao {
     Stock getLatestStock();
     
     @Insert(onConflict = OnConflictStrategy.REPLACE)
-    void insertStock(Stock stock);
+    void insertStockRow(Stock stock);
     
     @Update
-    void updateStock(Stock stock);
+    void updateStockRow(Stock stock);
+    
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertFragranceLines(List<StockFragrance> lines);
+    
+    @Query("DELETE FROM stock_fragrances WHERE stock_id = :stockId")
+    void deleteFragranceLines(String stockId);
+    
+    /**
+     * Insert or replace a stock movement and its stock_fragrances rows in one transaction
+     */
+    @Transaction
+    default void insertStock(Stock stock) {
+        insertStockRow(stock);
+        replaceFragranceLines(stock);
+        EntityCache.evict("stock", stock.id);
+    }
+    
+    @Transaction
+    default void updateStock(Stock stock) {
+        updateStockRow(stock);
+        replaceFragranceLines(stock);
+        EntityCache.evict("stock", stock.id);
+    }
+    
+    default void replaceFragranceLines(Stock stock) {
+        deleteFragranceLines(stock.id);
+        if (stock.fragranceDistribution == null || stock.fragranceDistribution.isEmpty()) {
+            return;
+        }
+        List<StockFragrance> lines = new ArrayList<>(stock.fragranceDistribution.size());
+        for (Map.Entry<String, Integer> entry : stock.fragranceDistribution.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            StockFragrance line = new StockFragrance();
+            line.stockId = stock.id;
+            line.fragranceId = entry.getKey();
+            line.qty = entry.getValue();
+            line.type = stock.type;
+            line.date = stock.date != null ? stock.date.getTime() : null;
+            lines.add(line);
+        }
+        insertFragranceLines(lines);
+    }
     
     @Delete
     void deleteStock(Stock stock);
@@ -45,6 +102,9 @@ public interface StockDao {
     
     @Query("SELECT COUNT(*) FROM stock WHERE sync_status = 'pending'")
     int getPendingSyncCount();
+    
+    @Query("UPDATE stock SET id = :serverId WHERE id = :tempId")
+    void remapId(String tempId, String serverId);
 }
 
 
@@ -0,0 +1,55 @@
+package com.example.app.database.dao;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.example.app.database.entity.SalesMonthlySummary;
+import com.example.app.database.entity.SalesSupermarketSummary;
+
+import java.util.List;
+
+/**
+ * Dashboard totals read from the trigger-maintained summary tables
+ */
+@Dao
+public interface SummaryDao {
+    @Query("SELECT * FROM sales_monthly_summary WHERE month = :month")
+    SalesMonthlySummary getMonthlySummary(String month);
+    
+    @Query("SELECT * FROM sales_monthly_summary ORDER BY month DESC")
+    List<SalesMonthlySummary> getMonthlySummaries();
+    
+    @Query("SELECT * FROM sales_supermarket_summary WHERE supermarket_id = :supermarketId")
+    SalesSupermarketSummary getSupermarketSummary(String supermarketId);
+    
+    @Query("SELECT * FROM sales_supermarket_summary ORDER BY total_value DESC")
+    List<SalesSupermarketSummary> getSupermarketSummaries();
+    
+    @Query("DELETE FROM sales_monthly_summary")
+    void clearMonthlySummaries();
+    
+    @Query("DELETE FROM sales_supermarket_summary")
+    void clearSupermarketSummaries();
+    
+    @Query("INSERT INTO sales_monthly_summary (month, sale_count, quantity, cartons, total_value, remaining_amount) " +
+           "SELECT IFNULL(strftime('%Y-%m', date / 1000, 'unixepoch'), ''), COUNT(*), SUM(quantity), SUM(cartons), " +
+           "SUM(total_value), SUM(remaining_amount) FROM sales GROUP BY 1")
+    void fillMonthlySummaries();
+    
+    @Query("INSERT INTO sales_supermarket_summary (supermarket_id, sale_count, quantity, cartons, total_value, remaining_amount) " +
+           "SELECT IFNULL(supermarket_id, ''), COUNT(*), SUM(quantity), SUM(cartons), " +
+           "SUM(total_value), SUM(remaining_amount) FROM sales GROUP BY 1")
+    void fillSupermarketSummaries();
+    
+    /**
+     * Recompute both summary tables from the sales table (repair or after bulk imports)
+     */
+    @Transaction
+    default void rebuildSummaries() {
+        clearMonthlySummaries();
+        clearSupermarketSummaries();
+        fillMonthlySummaries();
+        fillSupermarketSummaries();
+    }
+}
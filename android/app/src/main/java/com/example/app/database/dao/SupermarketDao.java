@@ -7,8 +7,12 @@ import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 import androidx.room.Update;
 
+import com.example.app.database.EntityCache;
+import com.example.app.database.GeoHash;
+import com.example.app.database.SearchText;
 import com.example.app.database.entity.Supermarket;
 
+import java.util.Collections;
 import java.util.List;
 
 @Dao
@@ -22,14 +26,57 @@ public interface SupermarketDao {
     @Query("SELECT * FROM supermarkets WHERE id = :id")
     Supermarket getSupermarketById(String id);
     
-    @Query("SELECT * FROM supermarkets WHERE name LIKE '%' || :searchTerm || '%'")
-    List<Supermarket> searchSupermarkets(String searchTerm);
+    // Name-prefix hits first, then other name hits, then address-only hits
+    @Query("SELECT supermarkets.* FROM supermarkets " +
+           "JOIN supermarkets_fts ON supermarkets.rowid = supermarkets_fts.rowid " +
+           "WHERE supermarkets_fts MATCH :matchQuery " +
+           "ORDER BY CASE WHEN supermarkets.search_name LIKE :firstToken || '%' THEN 0 " +
+           "WHEN instr(supermarkets.search_name, :firstToken) > 0 THEN 1 ELSE 2 END, supermarkets.name " +
+           "LIMIT :limit")
+    List<Supermarket> searchSupermarketsFts(String matchQuery, String firstToken, int limit);
+    
+    /**
+     * Prefix, accent-insensitive search over name and address for search-as-you-type
+     */
+    default List<Supermarket> searchSupermarkets(String searchTerm) {
+        return searchSupermarkets(searchTerm, 50);
+    }
+    
+    default List<Supermarket> searchSupermarkets(String searchTerm, int limit) {
+        String matchQuery = SearchText.toPrefixQuery(searchTerm);
+        if (matchQuery == null) {
+            return Collections.emptyList();
+        }
+        return searchSupermarketsFts(matchQuery, SearchText.firstToken(searchTerm), limit);
+    }
+    
+    @Query("SELECT * FROM supermarkets WHERE geohash >= :fromHash AND geohash < :toHash " +
+           "AND latitude BETWEEN :minLat AND :maxLat AND longitude BETWEEN :minLon AND :maxLon")
+    List<Supermarket> getSupermarketsInGeohashRange(String fromHash, String toHash,
+                                                    double minLat, double maxLat,
+                                                    double minLon, double maxLon);
     
     @Insert(onConflict = OnConflictStrategy.REPLACE)
-    void insertSupermarket(Supermarket supermarket);
+    void insertSupermarketRow(Supermarket supermarket);
     
     @Update
-    void updateSupermarket(Supermarket supermarket);
+    void updateSupermarketRow(Supermarket supermarket);
+    
+    default void insertSupermarket(Supermarket supermarket) {
+        supermarket.searchName = SearchText.normalize(supermarket.name);
+        supermarket.searchAddress = SearchText.normalize(supermarket.address);
+        supermarket.geohash = GeoHash.encode(supermarket.latitude, supermarket.longitude, GeoHash.STORED_PRECISION);
+        insertSupermarketRow(supermarket);
+        EntityCache.evict("supermarkets", supermarket.id);
+    }
+    
+    default void updateSupermarket(Supermarket supermarket) {
+        supermarket.searchName = SearchText.normalize(supermarket.name);
+        supermarket.searchAddress = SearchText.normalize(supermarket.address);
+        supermarket.geohash = GeoHash.encode(supermarket.latitude, supermarket.longitude, GeoHash.STORED_PRECISION);
+        updateSupermarketRow(supermarket);
+        EntityCache.evict("supermarkets", supermarket.id);
+    }
     
     @Delete
     void deleteSupermarket(Supermarket supermarket);
@@ -42,6 +89,9 @@ public interface SupermarketDao {
     
     @Query("SELECT COUNT(*) FROM supermarkets WHERE sync_status = 'pending'")
     int getPendingSyncCount();
+    
+    @Query("UPDATE supermarkets SET id = :serverId WHERE id = :tempId")
+    void remapId(String tempId, String serverId);
 }
 
 
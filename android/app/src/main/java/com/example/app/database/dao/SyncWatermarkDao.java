@@ -0,0 +1,28 @@
+package com.example.app.database.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.example.app.database.entity.SyncWatermark;
+
+import java.util.List;
+
+@Dao
+public interface SyncWatermarkDao {
+    @Query("SELECT * FROM sync_watermarks WHERE table_name = :tableName")
+    SyncWatermark getWatermark(String tableName);
+    
+    @Query("SELECT * FROM sync_watermarks")
+    List<SyncWatermark> getAllWatermarks();
+    
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsertWatermark(SyncWatermark watermark);
+    
+    @Query("UPDATE sync_watermarks SET watermark = :watermark, row_count = row_count + :addedRows WHERE table_name = :tableName")
+    void advanceWatermark(String tableName, long watermark, long addedRows);
+    
+    @Query("DELETE FROM sync_watermarks")
+    void clearWatermarks();
+}
@@ -0,0 +1,64 @@
+package com.example.app.database.entity;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+import androidx.room.ColumnInfo;
+import androidx.room.Index;
+import androidx.room.TypeConverters;
+
+import com.example.app.database.converter.DateConverter;
+
+import java.util.Date;
+
+/**
+ * A queue item that ran out of retries or needs manual conflict resolution, kept out of the
+ * live offline_queue until it is replayed or discarded
+ */
+@Entity(
+    tableName = "dead_letters",
+    indices = {
+        @Index(value = {"table_name", "last_status_code"}),
+        @Index(value = {"failed_at"})
+    }
+)
+@TypeConverters(DateConverter.class)
+public class DeadLetterItem {
+    @PrimaryKey(autoGenerate = true)
+    public int id;
+    
+    @ColumnInfo(name = "operation_type")
+    public String operationType;
+    
+    @ColumnInfo(name = "table_name")
+    public String tableName;
+    
+    @ColumnInfo(name = "record_id")
+    public String recordId;
+    
+    @ColumnInfo(name = "payload", typeAffinity = ColumnInfo.BLOB)
+    public byte[] payload; // Copied as-is from the queue item (PayloadCodec)
+    
+    @ColumnInfo(name = "priority")
+    public int priority;
+    
+    @ColumnInfo(name = "created_at")
+    public Date createdAt; // When the operation was first queued
+    
+    @ColumnInfo(name = "failed_at")
+    public Date failedAt;
+    
+    @ColumnInfo(name = "retry_count")
+    public int retryCount;
+    
+    @ColumnInfo(name = "failure_reason")
+    public String failureReason;
+    
+    @ColumnInfo(name = "last_status_code")
+    public int lastStatusCode; // HTTP status of the last attempt, -1 for network errors
+    
+    @ColumnInfo(name = "attempt_history")
+    public String attemptHistory; // JSON array of {at, status, error}
+    
+    @ColumnInfo(name = "replay_count")
+    public int replayCount;
+}
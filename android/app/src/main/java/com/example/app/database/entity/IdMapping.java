@@ -0,0 +1,29 @@
+package com.example.app.database.entity;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+import androidx.room.ColumnInfo;
+import androidx.room.TypeConverters;
+import androidx.annotation.NonNull;
+
+import com.example.app.database.converter.DateConverter;
+
+import java.util.Date;
+
+@Entity(tableName = "id_mappings")
+@TypeConverters(DateConverter.class)
+public class IdMapping {
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "temp_id")
+    public String tempId;
+    
+    @ColumnInfo(name = "table_name")
+    public String tableName; // "sales", "orders", "stock", "supermarkets"
+    
+    @ColumnInfo(name = "server_id")
+    public String serverId;
+    
+    @ColumnInfo(name = "created_at")
+    public Date createdAt;
+}
@@ -3,13 +3,22 @@ package com.example.app.database.entity;
 import androidx.room.Entity;
 import androidx.room.PrimaryKey;
 import androidx.room.ColumnInfo;
+import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.TypeConverters;
 
 import com.example.app.database.converter.DateConverter;
+import com.example.app.database.converter.PayloadCodec;
+import com.example.app.database.converter.PayloadReferences;
 
 import java.util.Date;
 
-@Entity(tableName = "offline_queue")
+@Entity(
+    tableName = "offline_queue",
+    indices = {
+        @Index(value = {"status", "lease_expires_at"})
+    }
+)
 @TypeConverters(DateConverter.class)
 public class OfflineQueueItem {
     @PrimaryKey(autoGenerate = true)
@@ -24,8 +33,8 @@ public class OfflineQueueItem {
     @ColumnInfo(name = "record_id")
     public String recordId;
     
-    @ColumnInfo(name = "data")
-    public String data; // JSON string of the data
+    @ColumnInfo(name = "payload", typeAffinity = ColumnInfo.BLOB)
+    public byte[] payload; // JSON of the data, encoded by PayloadCodec
     
     @ColumnInfo(name = "created_at")
     public Date createdAt;
@@ -44,4 +53,38 @@ public class OfflineQueueItem {
     
     @ColumnInfo(name = "priority")
     public int priority; // 1 = high, 2 = medium, 3 = low
+    
+    @ColumnInfo(name = "attempt_history")
+    public String attemptHistory; // JSON array of recent failed attempts, see DeadLetterQueue
+    
+    @ColumnInfo(name = "replay_count")
+    public int replayCount; // Times the item came back from the dead-letter store
+    
+    @ColumnInfo(name = "lease_owner")
+    public String leaseOwner; // Worker holding the item while it is processing
+    
+    @ColumnInfo(name = "lease_expires_at")
+    public Long leaseExpiresAt; // Epoch millis; an expired lease is swept back to pending
+    
+    @ColumnInfo(name = "referenced_ids")
+    public String referencedIds; // Id-like payload values, see PayloadReferences; null if not indexed
+    
+    @Ignore
+    private String data;
+    
+    /**
+     * JSON string of the data, decoded from the payload on first access
+     */
+    public String getData() {
+        if (data == null && payload != null) {
+            data = PayloadCodec.decode(payload);
+        }
+        return data;
+    }
+    
+    public void setData(String data) {
+        this.data = data;
+        this.payload = PayloadCodec.encode(data);
+        this.referencedIds = PayloadReferences.index(data);
+    }
 }
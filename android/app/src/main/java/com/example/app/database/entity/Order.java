@@ -3,6 +3,7 @@ package com.example.app.database.entity;
 import androidx.room.Entity;
 import androidx.room.PrimaryKey;
 import androidx.room.ColumnInfo;
+import androidx.room.Index;
 import androidx.room.TypeConverters;
 import androidx.annotation.NonNull;
 
@@ -10,7 +11,13 @@ import com.example.app.database.converter.DateConverter;
 
 import java.util.Date;
 
-@Entity(tableName = "orders")
+@Entity(
+    tableName = "orders",
+    indices = {
+        @Index(value = {"date", "id"}),
+        @Index(value = {"supermarket_id", "date", "id"})
+    }
+)
 @TypeConverters(DateConverter.class)
 public class Order {
     @PrimaryKey
@@ -0,0 +1,28 @@
+package com.example.app.database.entity;
+
+import androidx.room.Entity;
+import androidx.room.ColumnInfo;
+import androidx.annotation.NonNull;
+
+/**
+ * Number of offline_queue rows per (status, table, priority), maintained by triggers
+ */
+@Entity(
+    tableName = "queue_counters",
+    primaryKeys = {"status", "table_name", "priority"}
+)
+public class QueueCounter {
+    @NonNull
+    @ColumnInfo(name = "status")
+    public String status = "";
+    
+    @NonNull
+    @ColumnInfo(name = "table_name")
+    public String tableName = "";
+    
+    @ColumnInfo(name = "priority")
+    public int priority;
+    
+    @ColumnInfo(name = "count")
+    public int count;
+}
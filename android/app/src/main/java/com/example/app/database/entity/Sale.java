@@ -3,6 +3,7 @@ package com.example.app.database.entity;
 import androidx.room.Entity;
 import androidx.room.PrimaryKey;
 import androidx.room.ColumnInfo;
+import androidx.room.Index;
 import androidx.room.TypeConverters;
 import androidx.annotation.NonNull;
 
@@ -12,7 +13,13 @@ import com.example.app.database.converter.JsonConverter;
 import java.util.Date;
 import java.util.Map;
 
-@Entity(tableName = "sales")
+@Entity(
+    tableName = "sales",
+    indices = {
+        @Index(value = {"date", "id"}),
+        @Index(value = {"supermarket_id", "date", "id"})
+    }
+)
 @TypeConverters({DateConverter.class, JsonConverter.class})
 public class Sale {
     @PrimaryKey
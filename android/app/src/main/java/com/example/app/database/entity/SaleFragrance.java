@@ -0,0 +1,42 @@
+package com.example.app.database.entity;
+
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.ColumnInfo;
+import androidx.annotation.NonNull;
+
+/**
+ * One row per fragrance of a sale, mirroring Sale.fragranceDistribution.
+ * The sale date is copied in so per-period fragrance totals need no join.
+ */
+@Entity(
+    tableName = "sale_fragrances",
+    primaryKeys = {"sale_id", "fragrance_id"},
+    foreignKeys = @ForeignKey(
+        entity = Sale.class,
+        parentColumns = "id",
+        childColumns = "sale_id",
+        onDelete = ForeignKey.CASCADE,
+        onUpdate = ForeignKey.CASCADE
+    ),
+    indices = {
+        @Index(value = {"fragrance_id", "date"}),
+        @Index(value = {"date"})
+    }
+)
+public class SaleFragrance {
+    @NonNull
+    @ColumnInfo(name = "sale_id")
+    public String saleId;
+    
+    @NonNull
+    @ColumnInfo(name = "fragrance_id")
+    public String fragranceId;
+    
+    @ColumnInfo(name = "qty")
+    public int qty;
+    
+    @ColumnInfo(name = "date")
+    public Long date; // Sale date in epoch millis
+}
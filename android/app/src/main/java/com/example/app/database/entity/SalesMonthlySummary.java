@@ -0,0 +1,32 @@
+package com.example.app.database.entity;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+import androidx.room.ColumnInfo;
+import androidx.annotation.NonNull;
+
+/**
+ * Running sales totals per UTC month ("yyyy-MM"), maintained by triggers on the sales table
+ */
+@Entity(tableName = "sales_monthly_summary")
+public class SalesMonthlySummary {
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "month")
+    public String month;
+    
+    @ColumnInfo(name = "sale_count")
+    public int saleCount;
+    
+    @ColumnInfo(name = "quantity")
+    public long quantity;
+    
+    @ColumnInfo(name = "cartons")
+    public long cartons;
+    
+    @ColumnInfo(name = "total_value")
+    public double totalValue;
+    
+    @ColumnInfo(name = "remaining_amount")
+    public double remainingAmount;
+}
@@ -3,6 +3,7 @@ package com.example.app.database.entity;
 import androidx.room.Entity;
 import androidx.room.PrimaryKey;
 import androidx.room.ColumnInfo;
+import androidx.room.Index;
 import androidx.room.TypeConverters;
 import androidx.annotation.NonNull;
 
@@ -12,7 +13,12 @@ import com.example.app.database.converter.JsonConverter;
 import java.util.Date;
 import java.util.Map;
 
-@Entity(tableName = "stock")
+@Entity(
+    tableName = "stock",
+    indices = {
+        @Index(value = {"date", "id"})
+    }
+)
 @TypeConverters({DateConverter.class, JsonConverter.class})
 public class Stock {
     @PrimaryKey
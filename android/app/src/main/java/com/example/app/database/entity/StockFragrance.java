@@ -0,0 +1,44 @@
+package com.example.app.database.entity;
+
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.ColumnInfo;
+import androidx.annotation.NonNull;
+
+/**
+ * One row per fragrance of a stock movement, mirroring Stock.fragranceDistribution.
+ * The movement type is copied in so the signed total is a single-table aggregate.
+ */
+@Entity(
+    tableName = "stock_fragrances",
+    primaryKeys = {"stock_id", "fragrance_id"},
+    foreignKeys = @ForeignKey(
+        entity = Stock.class,
+        parentColumns = "id",
+        childColumns = "stock_id",
+        onDelete = ForeignKey.CASCADE,
+        onUpdate = ForeignKey.CASCADE
+    ),
+    indices = {
+        @Index(value = {"fragrance_id"})
+    }
+)
+public class StockFragrance {
+    @NonNull
+    @ColumnInfo(name = "stock_id")
+    public String stockId;
+    
+    @NonNull
+    @ColumnInfo(name = "fragrance_id")
+    public String fragranceId;
+    
+    @ColumnInfo(name = "qty")
+    public int qty;
+    
+    @ColumnInfo(name = "type")
+    public String type; // "added", "removed", "adjusted"
+    
+    @ColumnInfo(name = "date")
+    public Long date; // Movement date in epoch millis
+}
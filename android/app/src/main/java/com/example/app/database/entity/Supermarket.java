@@ -3,6 +3,7 @@ package com.example.app.database.entity;
 import androidx.room.Entity;
 import androidx.room.PrimaryKey;
 import androidx.room.ColumnInfo;
+import androidx.room.Index;
 import androidx.room.TypeConverters;
 import androidx.annotation.NonNull;
 
@@ -12,7 +13,12 @@ import com.example.app.database.converter.DateConverter;
 import java.util.Date;
 import java.util.List;
 
-@Entity(tableName = "supermarkets")
+@Entity(
+    tableName = "supermarkets",
+    indices = {
+        @Index(value = {"geohash"})
+    }
+)
 @TypeConverters({JsonConverter.class, DateConverter.class})
 public class Supermarket {
     @PrimaryKey
@@ -43,6 +49,15 @@ public class Supermarket {
     @ColumnInfo(name = "updated_at")
     public Date updatedAt;
     
+    @ColumnInfo(name = "search_name")
+    public String searchName; // Folded name for the FTS index, see SearchText
+    
+    @ColumnInfo(name = "search_address")
+    public String searchAddress; // Folded address for the FTS index
+    
+    @ColumnInfo(name = "geohash")
+    public String geohash; // Location index key, see GeoHash
+    
     @ColumnInfo(name = "sync_status")
     public String syncStatus; // "synced", "pending", "failed"
     
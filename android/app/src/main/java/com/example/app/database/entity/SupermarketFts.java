@@ -0,0 +1,20 @@
+package com.example.app.database.entity;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+
+/**
+ * External-content FTS4 index over the folded supermarket name and address.
+ * Room generates the triggers that keep it in sync with the supermarkets table.
+ */
+@Entity(tableName = "supermarkets_fts")
+@Fts4(contentEntity = Supermarket.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+public class SupermarketFts {
+    @ColumnInfo(name = "search_name")
+    public String searchName;
+    
+    @ColumnInfo(name = "search_address")
+    public String searchAddress;
+}
@@ -0,0 +1,35 @@
+package com.example.app.database.entity;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+import androidx.room.ColumnInfo;
+import androidx.room.TypeConverters;
+import androidx.annotation.NonNull;
+
+import com.example.app.database.converter.DateConverter;
+
+import java.util.Date;
+
+/**
+ * Per-table download state: the latest server updated_at already stored locally
+ */
+@Entity(tableName = "sync_watermarks")
+@TypeConverters(DateConverter.class)
+public class SyncWatermark {
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "table_name")
+    public String tableName;
+    
+    @ColumnInfo(name = "watermark")
+    public Long watermark; // Epoch millis of the newest updated_at seen, null if the table was empty
+    
+    @ColumnInfo(name = "row_count")
+    public long rowCount;
+    
+    @ColumnInfo(name = "bootstrapped_at")
+    public Date bootstrappedAt;
+    
+    @ColumnInfo(name = "pending_index_sql")
+    public String pendingIndexSql; // Indices dropped for a bulk load and not yet rebuilt
+}
@@ -1,8 +1,8 @@
 package com.example.app.offline;
 
-import android.util.Log;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
@@ -64,10 +64,10 @@ public class ConflictResolver {
             if (localModified != null && remoteModified != null) {
                 // Use timestamp-based resolution
                 if (localModified.after(remoteModified)) {
-                    Log.d(TAG, "Local version is newer, using local data");
+                    SyncLog.d(TAG, "Local version is newer, using local data");
                     return new ConflictResult(ConflictResolution.USE_LOCAL, localData, "Local version newer");
                 } else if (remoteModified.after(localModified)) {
-                    Log.d(TAG, "Remote version is newer, using remote data");
+                    SyncLog.d(TAG, "Remote version is newer, using remote data");
                     return new ConflictResult(ConflictResolution.USE_REMOTE, remoteData, "Remote version newer");
                 } else {
                     // Same timestamp, try to merge
@@ -79,12 +79,49 @@ public class ConflictResolver {
             return resolveByTableLogic(tableName, localJson, remoteJson);
             
         } catch (Exception e) {
-            Log.e(TAG, "Error resolving conflict", e);
+            SyncLog.e(TAG, "Error resolving conflict", e);
             // On error, prefer remote data to maintain consistency
             return new ConflictResult(ConflictResolution.USE_REMOTE, remoteData, "Error in conflict resolution: " + e.getMessage());
         }
     }
     
+    /**
+     * Resolve a {@link OfflineConfig#OP_SALE_WITH_STOCK} item against the server's sale.
+     * The sale decides the outcome and the movement always stays attached. Keeping the
+     * remote sale becomes a resend with that sale, because the server applies a movement
+     * only once per id and may not have seen this one yet.
+     */
+    public ConflictResult resolveSaleWithStockConflict(String localData, String remoteData) {
+        try {
+            JsonObject compound = JsonParser.parseString(localData).getAsJsonObject();
+            JsonElement remote = JsonParser.parseString(remoteData);
+            if (remote.isJsonArray()) {
+                remote = remote.getAsJsonArray().size() > 0 ? remote.getAsJsonArray().get(0) : null;
+            }
+            if (remote == null || !remote.isJsonObject()) {
+                return new ConflictResult(ConflictResolution.USE_LOCAL, localData, "Sale missing on server");
+            }
+            
+            ConflictResult saleResult = resolveConflict(OfflineConfig.TABLE_SALES,
+                gson.toJson(compound.get("sale")), gson.toJson(remote));
+            switch (saleResult.resolution) {
+                case USE_REMOTE:
+                    compound.add("sale", remote);
+                    return new ConflictResult(ConflictResolution.MERGE, gson.toJson(compound), saleResult.conflictReason);
+                case MERGE:
+                    compound.add("sale", JsonParser.parseString(saleResult.resolvedData));
+                    return new ConflictResult(ConflictResolution.MERGE, gson.toJson(compound), saleResult.conflictReason);
+                case USE_LOCAL:
+                    return new ConflictResult(ConflictResolution.USE_LOCAL, localData, saleResult.conflictReason);
+                default:
+                    return new ConflictResult(saleResult.resolution, localData, saleResult.conflictReason);
+            }
+        } catch (Exception e) {
+            SyncLog.e(TAG, "Error resolving sale with stock conflict", e);
+            return new ConflictResult(ConflictResolution.MANUAL, localData, "Error in conflict resolution: " + e.getMessage());
+        }
+    }
+    
     private ConflictResult resolveByTableLogic(String tableName, JsonObject localJson, JsonObject remoteJson) {
         switch (tableName) {
             case OfflineConfig.TABLE_SALES:
@@ -96,7 +133,7 @@ public class ConflictResolver {
             case OfflineConfig.TABLE_SUPERMARKETS:
                 return resolveSupermarketsConflict(localJson, remoteJson);
             default:
-                Log.w(TAG, "No specific conflict resolution for table: " + tableName);
+                SyncLog.w(TAG, "No specific conflict resolution for table: {}", tableName);
                 return new ConflictResult(ConflictResolution.USE_REMOTE, gson.toJson(remoteJson), "Default to remote");
         }
     }
@@ -180,7 +217,7 @@ public class ConflictResolver {
             return new ConflictResult(ConflictResolution.MERGE, gson.toJson(merged), "Successfully merged changes");
             
         } catch (Exception e) {
-            Log.e(TAG, "Error attempting merge", e);
+            SyncLog.e(TAG, "Error attempting merge", e);
             return new ConflictResult(ConflictResolution.USE_REMOTE, gson.toJson(remoteJson), "Merge failed: " + e.getMessage());
         }
     }
@@ -208,7 +245,7 @@ public class ConflictResolver {
                 return dateFormat.parse(timestamp);
             }
         } catch (ParseException e) {
-            Log.w(TAG, "Error parsing timestamp: " + field, e);
+            SyncLog.w(TAG, "Error parsing timestamp: " + field, e);
         }
         return null;
     }
@@ -0,0 +1,189 @@
+package com.example.app.offline;
+
+import com.example.app.database.AppDatabase;
+import com.example.app.database.converter.PayloadReferences;
+import com.example.app.database.dao.DeadLetterDao;
+import com.example.app.database.entity.DeadLetterItem;
+import com.example.app.database.entity.OfflineQueueItem;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Holds queue items that will not succeed without intervention, outside the live queue.
+ *
+ * Items are moved here with their failure reason, last HTTP status and attempt history, and
+ * can be replayed in bulk by table and status range once the server side is fixed. They are
+ * kept until replayed or explicitly discarded.
+ */
+public class DeadLetterQueue {
+    private static final String TAG = "DeadLetterQueue";
+    private static final int MAX_ATTEMPT_HISTORY = 10;
+    private static final int REPLAY_BATCH_SIZE = 200;
+    
+    /** lastStatusCode of items evicted by the DROP_OLDEST_LOW_PRIORITY backpressure policy */
+    public static final int STATUS_EVICTED = 0;
+    
+    private final AppDatabase database;
+    private final DeadLetterDao deadLetterDao;
+    private final QueueCounters queueCounters;
+    
+    public DeadLetterQueue(AppDatabase database) {
+        this.database = database;
+        this.deadLetterDao = database.deadLetterDao();
+        this.queueCounters = QueueCounters.getInstance(database);
+    }
+    
+    /**
+     * Which dead letters to replay or discard
+     */
+    public static class Filter {
+        public final String tableName;     // null for every table
+        public final int minStatusCode;
+        public final int maxStatusCode;
+        
+        public Filter(String tableName, int minStatusCode, int maxStatusCode) {
+            this.tableName = tableName;
+            this.minStatusCode = minStatusCode;
+            this.maxStatusCode = maxStatusCode;
+        }
+        
+        public static Filter all() {
+            return new Filter(null, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+        
+        public static Filter serverErrors(String tableName) {
+            return new Filter(tableName, 500, 599);
+        }
+    }
+    
+    /**
+     * Append an attempt to the item's history, keeping the most recent MAX_ATTEMPT_HISTORY
+     */
+    public static void recordAttempt(OfflineQueueItem item, int statusCode, String error) {
+        JsonArray history = new JsonArray();
+        if (item.attemptHistory != null && !item.attemptHistory.isEmpty()) {
+            try {
+                JsonElement parsed = JsonParser.parseString(item.attemptHistory);
+                if (parsed.isJsonArray()) {
+                    history = parsed.getAsJsonArray();
+                }
+            } catch (Exception e) {
+                SyncLog.w(TAG, "Discarding unreadable attempt history of item {}", item.id, e);
+            }
+        }
+        
+        JsonObject attempt = new JsonObject();
+        attempt.addProperty("at", System.currentTimeMillis());
+        attempt.addProperty("status", statusCode);
+        attempt.addProperty("error", error);
+        history.add(attempt);
+        
+        while (history.size() > MAX_ATTEMPT_HISTORY) {
+            history.remove(0);
+        }
+        item.attemptHistory = history.toString();
+    }
+    
+    /**
+     * Move an item out of the live queue in one transaction
+     */
+    public void bury(OfflineQueueItem item, String reason, int statusCode) {
+        DeadLetterItem deadLetter = new DeadLetterItem();
+        deadLetter.operationType = item.operationType;
+        deadLetter.tableName = item.tableName;
+        deadLetter.recordId = item.recordId;
+        deadLetter.payload = item.payload;
+        deadLetter.priority = item.priority;
+        deadLetter.createdAt = item.createdAt;
+        deadLetter.failedAt = new Date();
+        deadLetter.retryCount = item.retryCount;
+        deadLetter.failureReason = reason;
+        deadLetter.lastStatusCode = statusCode;
+        deadLetter.attemptHistory = item.attemptHistory;
+        deadLetter.replayCount = item.replayCount;
+        
+        queueCounters.write(delta -> database.runInTransaction(() -> {
+            deadLetterDao.insertDeadLetter(deadLetter);
+            database.offlineQueueDao().deleteItem(item);
+            delta.remove(item);
+            delta.addDeadLetters(1);
+        }));
+        SyncLog.w(TAG, "Dead-lettered {} on {}:{} ({}): {}",
+                  item.operationType, item.tableName, item.recordId, statusCode, reason);
+    }
+    
+    /**
+     * Move matching dead letters back to the queue as fresh pending items, a batch per
+     * transaction, never past MAX_QUEUE_SIZE. Call it under the sync manager's admission
+     * lock so other writers cannot fill the room it measured.
+     * @return Number of items replayed
+     */
+    public int replay(Filter filter) {
+        int replayed = 0;
+        
+        while (true) {
+            int room = OfflineConfig.MAX_QUEUE_SIZE - queueCounters.getQueueSize();
+            if (room <= 0) {
+                SyncLog.w(TAG, "Queue full, replay stopped after {} items", replayed);
+                break;
+            }
+            
+            List<DeadLetterItem> batch = deadLetterDao.getMatching(filter.tableName,
+                filter.minStatusCode, filter.maxStatusCode, Math.min(room, REPLAY_BATCH_SIZE));
+            if (batch.isEmpty()) {
+                break;
+            }
+            
+            queueCounters.write(delta -> database.runInTransaction(() -> {
+                for (DeadLetterItem deadLetter : batch) {
+                    OfflineQueueItem item = toQueueItem(deadLetter);
+                    database.offlineQueueDao().insertItem(item);
+                    delta.add(item);
+                }
+                deadLetterDao.deleteDeadLetters(batch);
+                delta.removeDeadLetters(batch.size());
+            }));
+            replayed += batch.size();
+        }
+        
+        SyncLog.d(TAG, "Replayed {} dead letters", replayed);
+        return replayed;
+    }
+    
+    /**
+     * Permanently delete matching dead letters. Dead letters are never removed on their own;
+     * this is for an operator who has decided the operations should not reach the server.
+     * @return Number of items discarded
+     */
+    public int discard(Filter filter) {
+        final int[] discarded = {0};
+        queueCounters.write(delta -> {
+            discarded[0] = deadLetterDao.deleteMatching(filter.tableName,
+                filter.minStatusCode, filter.maxStatusCode);
+            delta.removeDeadLetters(discarded[0]);
+        });
+        SyncLog.w(TAG, "Discarded {} dead letters", discarded[0]);
+        return discarded[0];
+    }
+    
+    private static OfflineQueueItem toQueueItem(DeadLetterItem deadLetter) {
+        OfflineQueueItem item = new OfflineQueueItem();
+        item.operationType = deadLetter.operationType;
+        item.tableName = deadLetter.tableName;
+        item.recordId = deadLetter.recordId;
+        item.payload = deadLetter.payload;
+        item.referencedIds = PayloadReferences.index(item.getData());
+        item.priority = deadLetter.priority;
+        item.createdAt = deadLetter.createdAt; // Keeps its place relative to later operations
+        item.status = OfflineConfig.STATUS_PENDING;
+        item.retryCount = 0;
+        item.attemptHistory = deadLetter.attemptHistory;
+        item.replayCount = deadLetter.replayCount + 1;
+        return item;
+    }
+}
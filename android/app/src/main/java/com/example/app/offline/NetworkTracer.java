@@ -0,0 +1,277 @@
+package com.example.app.offline;
+
+import android.util.Log;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+/**
+ * Records per-call phase timings (DNS, connect, TLS, request, server wait, download) of the
+ * Supabase HTTP calls into a fixed-size ring buffer.
+ *
+ * Installed as the OkHttp EventListener.Factory. While disabled it hands out
+ * {@link EventListener#NONE}, so calls pay for nothing beyond one volatile read.
+ */
+public final class NetworkTracer implements EventListener.Factory {
+    private static final String TAG = "NetworkTracer";
+    private static final NetworkTracer INSTANCE = new NetworkTracer(OfflineConfig.TRACE_BUFFER_SIZE);
+    
+    private final CallTrace[] ring;
+    private int next = 0;
+    private int count = 0;
+    private volatile boolean enabled = false;
+    
+    /**
+     * Identifies the queue item a request belongs to; attached with Request.Builder.tag
+     */
+    public static class TraceTag {
+        public final int itemId;
+        public final String tableName;
+        
+        public TraceTag(int itemId, String tableName) {
+            this.itemId = itemId;
+            this.tableName = tableName;
+        }
+    }
+    
+    /**
+     * Timings of one call; phase fields are milliseconds, -1 when the phase did not happen
+     * (e.g. no DNS or connect on a pooled connection)
+     */
+    public static class CallTrace {
+        public int itemId = -1;
+        public String tableName;
+        public String method;
+        public String path;
+        public long startedAt;           // Wall clock, epoch millis
+        public int statusCode = -1;
+        public String error;
+        public boolean connectionReused = true;
+        
+        public double dnsMs = -1;
+        public double connectMs = -1;    // TCP + TLS
+        public double tlsMs = -1;
+        public double requestMs = -1;    // Writing headers and body
+        public double serverMs = -1;     // Request sent until response headers start
+        public double downloadMs = -1;   // Response headers start until body consumed
+        public double totalMs = -1;
+    }
+    
+    private NetworkTracer(int capacity) {
+        this.ring = new CallTrace[capacity];
+    }
+    
+    public static NetworkTracer getInstance() {
+        return INSTANCE;
+    }
+    
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        Log.d(TAG, "Network tracing " + (enabled ? "enabled" : "disabled"));
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    @Override
+    public EventListener create(Call call) {
+        if (!enabled) {
+            return EventListener.NONE;
+        }
+        return new TracingListener(call);
+    }
+    
+    /**
+     * Traces currently in the buffer, oldest first
+     */
+    public synchronized List<CallTrace> getTraces() {
+        List<CallTrace> traces = new ArrayList<>(count);
+        int start = (next - count + ring.length) % ring.length;
+        for (int i = 0; i < count; i++) {
+            traces.add(ring[(start + i) % ring.length]);
+        }
+        return traces;
+    }
+    
+    public synchronized void clear() {
+        next = 0;
+        count = 0;
+    }
+    
+    /**
+     * Write the buffered traces to a file as a JSON array
+     */
+    public void dumpToFile(File file) throws IOException {
+        List<CallTrace> traces = getTraces();
+        try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            writer.beginArray();
+            for (CallTrace trace : traces) {
+                writer.beginObject();
+                writer.name("item_id").value(trace.itemId);
+                writer.name("table").value(trace.tableName);
+                writer.name("method").value(trace.method);
+                writer.name("path").value(trace.path);
+                writer.name("started_at").value(trace.startedAt);
+                writer.name("status").value(trace.statusCode);
+                writer.name("error").value(trace.error);
+                writer.name("connection_reused").value(trace.connectionReused);
+                writer.name("dns_ms").value(trace.dnsMs);
+                writer.name("connect_ms").value(trace.connectMs);
+                writer.name("tls_ms").value(trace.tlsMs);
+                writer.name("request_ms").value(trace.requestMs);
+                writer.name("server_ms").value(trace.serverMs);
+                writer.name("download_ms").value(trace.downloadMs);
+                writer.name("total_ms").value(trace.totalMs);
+                writer.endObject();
+            }
+            writer.endArray();
+        }
+        Log.d(TAG, "Wrote " + traces.size() + " traces to " + file);
+    }
+    
+    private synchronized void record(CallTrace trace) {
+        ring[next] = trace;
+        next = (next + 1) % ring.length;
+        if (count < ring.length) {
+            count++;
+        }
+    }
+    
+    private static double millisBetween(long startNanos, long endNanos) {
+        if (startNanos == 0 || endNanos == 0) {
+            return -1;
+        }
+        return (endNanos - startNanos) / 1_000_000.0;
+    }
+    
+    /**
+     * Collects the event timestamps of one call; OkHttp delivers a call's events sequentially
+     */
+    private class TracingListener extends EventListener {
+        private final CallTrace trace = new CallTrace();
+        
+        private long callStart;
+        private long dnsStart;
+        private long connectStart;
+        private long secureConnectStart;
+        private long requestStart;
+        private long requestEnd;
+        private long responseStart;
+        private long responseEnd;
+        
+        TracingListener(Call call) {
+            TraceTag tag = call.request().tag(TraceTag.class);
+            if (tag != null) {
+                trace.itemId = tag.itemId;
+                trace.tableName = tag.tableName;
+            }
+            trace.method = call.request().method();
+            trace.path = call.request().url().encodedPath();
+        }
+        
+        @Override
+        public void callStart(Call call) {
+            callStart = System.nanoTime();
+            trace.startedAt = System.currentTimeMillis();
+        }
+        
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStart = System.nanoTime();
+        }
+        
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> addresses) {
+            trace.dnsMs = millisBetween(dnsStart, System.nanoTime());
+        }
+        
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            connectStart = System.nanoTime();
+            trace.connectionReused = false;
+        }
+        
+        @Override
+        public void secureConnectStart(Call call) {
+            secureConnectStart = System.nanoTime();
+        }
+        
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            trace.tlsMs = millisBetween(secureConnectStart, System.nanoTime());
+        }
+        
+        @Override
+        public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+            trace.connectMs = millisBetween(connectStart, System.nanoTime());
+        }
+        
+        @Override
+        public void requestHeadersStart(Call call) {
+            requestStart = System.nanoTime();
+        }
+        
+        @Override
+        public void requestHeadersEnd(Call call, okhttp3.Request request) {
+            requestEnd = System.nanoTime();
+        }
+        
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            requestEnd = System.nanoTime();
+        }
+        
+        @Override
+        public void responseHeadersStart(Call call) {
+            responseStart = System.nanoTime();
+        }
+        
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            trace.statusCode = response.code();
+        }
+        
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            responseEnd = System.nanoTime();
+        }
+        
+        @Override
+        public void callEnd(Call call) {
+            finish(null);
+        }
+        
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            finish(ioe.getMessage());
+        }
+        
+        private void finish(String error) {
+            long end = System.nanoTime();
+            trace.error = error;
+            trace.requestMs = millisBetween(requestStart, requestEnd);
+            trace.serverMs = millisBetween(requestEnd, responseStart);
+            trace.downloadMs = millisBetween(responseStart, responseEnd);
+            trace.totalMs = millisBetween(callStart, end);
+            record(trace);
+        }
+    }
+}
@@ -19,6 +19,40 @@ public final class OfflineConfig {
     // Batch processing
     public static final int BATCH_SIZE = 10;
     public static final int MAX_CONCURRENT_OPERATIONS = 3;
+
+    // Fair scheduling (weights are multiplied: priority weight x table weight)
+    public static final int SCHEDULER_WEIGHT_HIGH = 8;
+    public static final int SCHEDULER_WEIGHT_MEDIUM = 4;
+    public static final int SCHEDULER_WEIGHT_LOW = 2;
+    public static final int SCHEDULER_WEIGHT_SALES = 2;
+    public static final int SCHEDULER_WEIGHT_STOCK = 2;
+    public static final int SCHEDULER_WEIGHT_ORDERS = 2;
+    public static final int SCHEDULER_WEIGHT_SUPERMARKETS = 1;
+    public static final long SCHEDULER_AGING_INTERVAL = 60_000;  // 1 stride of the heaviest class per minute waited
+    public static final int SCHEDULER_MAX_AGING_STRIDES = 10;    // Cap, so hours-old backlogs keep their weights
+
+    // Leases on items being sent
+    public static final long LEASE_DURATION = 60_000;            // Covers one request incl. conflict check
+    public static final long LEASE_SWEEP_INTERVAL = 120_000;     // Reclaim expired leases every 2 minutes
+    
+    // Repository revalidation (stale-while-revalidate)
+    public static final long REPOSITORY_TTL_SALES = 60_000;           // 1 minute
+    public static final long REPOSITORY_TTL_ORDERS = 60_000;          // 1 minute
+    public static final long REPOSITORY_TTL_STOCK = 30_000;           // 30 seconds
+    public static final long REPOSITORY_TTL_SUPERMARKETS = 600_000;   // 10 minutes
+    public static final long REPOSITORY_RETRY_INTERVAL = 30_000;      // Min gap after a failed refresh
+    
+    // Realtime subscription
+    public static final long REALTIME_HEARTBEAT_INTERVAL = 25_000;       // Phoenix closes idle sockets after 60s
+    public static final long REALTIME_RECONNECT_INITIAL_DELAY = 1_000;
+    public static final long REALTIME_RECONNECT_MAX_DELAY = 60_000;
+    public static final long REALTIME_FALLBACK_PULL_INTERVAL = 60_000;   // Delta pull while the socket is down
+    
+    // Network tracing
+    public static final int TRACE_BUFFER_SIZE = 256;             // Most recent calls kept in memory
+    
+    // Logging
+    public static final int LOG_SAMPLE_RATE = 50;                // Per-item debug lines: 1 in 50
     
     // Network quality thresholds
     public static final int MIN_SIGNAL_STRENGTH_WIFI = -70;      // dBm
@@ -27,6 +61,11 @@ public final class OfflineConfig {
     
     // Database constraints
     public static final int MAX_QUEUE_SIZE = 1000;
+    public static final double QUEUE_HIGH_WATERMARK = 0.8;       // Signal pressure at 80% of MAX_QUEUE_SIZE
+    public static final long BACKPRESSURE_BLOCK_TIMEOUT = 5_000; // Max wait for space with the BLOCK policy
+    public static final long SERVICE_BIND_TIMEOUT = 5_000;       // Max wait for the sync service in blocking helper calls
+    public static final int SNAPSHOT_CHUNK_SIZE = 500;           // Rows per bulk-load transaction
+    public static final long SNAPSHOT_WATERMARK_OVERLAP = 60_000; // Re-read window for rows committed late
     public static final long CLEANUP_INTERVAL = 86_400_000;      // 24 hours
     public static final int DAYS_TO_KEEP_COMPLETED = 7;
     
@@ -39,6 +78,7 @@ public final class OfflineConfig {
     public static final String OP_UPDATE = "UPDATE";
     public static final String OP_DELETE = "DELETE";
     public static final String OP_SYNC = "SYNC";
+    public static final String OP_SALE_WITH_STOCK = "SALE_WITH_STOCK";  // Sale plus its stock movement
     
     // Sync statuses
     public static final String STATUS_PENDING = "pending";
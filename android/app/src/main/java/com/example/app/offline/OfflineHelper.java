@@ -6,10 +6,25 @@ import android.content.Intent;
 import android.content.ServiceConnection;
 import android.os.Build;
 import android.os.IBinder;
+import android.os.Looper;
 import android.util.Log;
 
+import com.example.app.database.AppDatabase;
+import com.example.app.database.ChangeStream;
+import com.example.app.database.ChangeStreams;
+import com.example.app.database.EntityCache;
+import com.example.app.database.ValueChangeStream;
+import com.example.app.database.converter.EntityTypeAdapters;
 import com.example.app.services.OfflineSyncService;
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Helper class for easy integration with the offline sync system
@@ -20,29 +35,40 @@ public class OfflineHelper {
     private final Context context;
     private final Gson gson;
     
-    private OfflineSyncService syncService;
-    private boolean isBound = false;
+    private final Object bindLock = new Object();
+    private volatile OfflineSyncService syncService;
+    private volatile boolean isBound = false;
+    
+    // Applied to every sync manager the helper binds to; guarded by bindLock
+    private OfflineSyncManager.QueuePressureListener queuePressureListener;
+    private OfflineSyncManager.BackpressurePolicy backpressurePolicy;
     
     private final ServiceConnection serviceConnection = new ServiceConnection() {
         @Override
         public void onServiceConnected(ComponentName name, IBinder service) {
             OfflineSyncService.LocalBinder binder = (OfflineSyncService.LocalBinder) service;
-            syncService = binder.getService();
-            isBound = true;
+            synchronized (bindLock) {
+                syncService = binder.getService();
+                isBound = true;
+                applySettings(syncService.getSyncManager());
+                bindLock.notifyAll();
+            }
             Log.d(TAG, "Service connected");
         }
         
         @Override
         public void onServiceDisconnected(ComponentName name) {
-            syncService = null;
-            isBound = false;
+            synchronized (bindLock) {
+                syncService = null;
+                isBound = false;
+            }
             Log.d(TAG, "Service disconnected");
         }
     };
     
     public OfflineHelper(Context context) {
         this.context = context.getApplicationContext();
-        this.gson = new Gson();
+        this.gson = EntityTypeAdapters.GSON;
         bindToService();
     }
     
@@ -59,9 +85,30 @@ public class OfflineHelper {
     }
     
     public void queueCreate(String tableName, Object data, int priority) {
-        String jsonData = gson.toJson(data);
-        String recordId = generateTempId();
-        queueOperation(OfflineConfig.OP_CREATE, tableName, recordId, jsonData, priority);
+        JsonElement payload = gson.toJsonTree(data);
+        String recordId = ensureRecordId(payload);
+        queueOperation(OfflineConfig.OP_CREATE, tableName, recordId, gson.toJson(payload), priority);
+    }
+    
+    private String ensureRecordId(JsonElement payload) {
+        String recordId = null;
+        
+        if (payload.isJsonObject()) {
+            JsonObject object = payload.getAsJsonObject();
+            JsonElement existingId = object.get("id");
+            if (existingId != null && existingId.isJsonPrimitive() && !existingId.getAsString().isEmpty()) {
+                recordId = existingId.getAsString();
+            } else {
+                // The client owns the id so a resent CREATE upserts instead of duplicating
+                recordId = generateRecordId();
+                object.addProperty("id", recordId);
+            }
+        }
+        
+        if (recordId == null) {
+            recordId = generateRecordId();
+        }
+        return recordId;
     }
     
     /**
@@ -111,6 +158,50 @@ public class OfflineHelper {
         Log.d(TAG, "Queued " + operationType + " operation for " + tableName + ":" + recordId);
     }
     
+    /**
+     * Queue many operations at once in one transaction, with backpressure applied.
+     * Blocks, so call it from a background thread; right after construction it waits for
+     * the service to bind.
+     * @return Number of operations accepted
+     * @throws IllegalStateException if the service does not bind within SERVICE_BIND_TIMEOUT
+     */
+    public int queueOperations(List<OfflineSyncManager.PendingOperation> operations) {
+        return requireSyncManager().queueOperations(operations);
+    }
+    
+    /**
+     * Wait for the service connection, for blocking calls that need the sync manager.
+     * Never waits on the main thread, which is where the connection is delivered.
+     */
+    private OfflineSyncManager requireSyncManager() {
+        long deadline = System.currentTimeMillis() + OfflineConfig.SERVICE_BIND_TIMEOUT;
+        boolean mayWait = Looper.myLooper() != Looper.getMainLooper();
+        synchronized (bindLock) {
+            while (!isBound || syncService == null || syncService.getSyncManager() == null) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (!mayWait || remaining <= 0) {
+                    throw new IllegalStateException("Offline sync service is not bound");
+                }
+                try {
+                    bindLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted waiting for the offline sync service");
+                }
+            }
+            return syncService.getSyncManager();
+        }
+    }
+    
+    /**
+     * Build a CREATE for a batch, assigning a client id when the payload has none
+     */
+    public OfflineSyncManager.PendingOperation createOperation(String tableName, JsonElement payload, int priority) {
+        String recordId = ensureRecordId(payload);
+        return new OfflineSyncManager.PendingOperation(
+            OfflineConfig.OP_CREATE, tableName, recordId, gson.toJson(payload), priority);
+    }
+    
     /**
      * Manually trigger sync
      */
@@ -131,6 +222,15 @@ public class OfflineHelper {
         Log.d(TAG, "Triggered manual sync");
     }
     
+    /**
+     * Download the server snapshot on first launch, or the changes since the last download
+     */
+    public void refreshFromServer(SnapshotBootstrapper.ProgressListener progressListener) {
+        if (isBound && syncService != null && syncService.getSyncManager() != null) {
+            syncService.getSyncManager().refreshFromServer(progressListener);
+        }
+    }
+    
     /**
      * Stop ongoing sync
      */
@@ -176,6 +276,151 @@ public class OfflineHelper {
         return 0;
     }
     
+    /**
+     * Get queue counters per status, table and priority without a database query
+     */
+    public QueueCounters.Snapshot getQueueCounters() {
+        return QueueCounters.getInstance(AppDatabase.getInstance(context)).getSnapshot();
+    }
+    
+    /**
+     * Replay dead letters matching the filter, e.g. {@code DeadLetterQueue.Filter.serverErrors("sales")}.
+     * Blocks, so call it from a background thread.
+     * @throws IllegalStateException if the service does not bind within SERVICE_BIND_TIMEOUT
+     */
+    public int replayDeadLetters(DeadLetterQueue.Filter filter) {
+        return requireSyncManager().replayDeadLetters(filter);
+    }
+    
+    /**
+     * Permanently delete dead letters matching the filter; they are never sent.
+     * Blocks, so call it from a background thread.
+     * @throws IllegalStateException if the service does not bind within SERVICE_BIND_TIMEOUT
+     */
+    public int discardDeadLetters(DeadLetterQueue.Filter filter) {
+        return requireSyncManager().discardDeadLetters(filter);
+    }
+    
+    /**
+     * Observe the pending count without polling; updates arrive on the main thread only when
+     * the queue table is written. Call stop() on the returned stream when done.
+     */
+    public ValueChangeStream<Integer> observePendingItemsCount(ChangeStream.Listener<Integer> listener) {
+        ValueChangeStream<Integer> stream = ChangeStreams.pendingCount(AppDatabase.getInstance(context));
+        stream.start(listener);
+        return stream;
+    }
+    
+    /**
+     * Observe the failed count, see {@link #observePendingItemsCount}
+     */
+    public ValueChangeStream<Integer> observeFailedItemsCount(ChangeStream.Listener<Integer> listener) {
+        ValueChangeStream<Integer> stream = ChangeStreams.failedCount(AppDatabase.getInstance(context));
+        stream.start(listener);
+        return stream;
+    }
+    
+    /**
+     * Get per-class scheduler statistics (throughput and wait times) for tuning weights
+     */
+    public Map<String, QueueScheduler.ClassStats> getSchedulerStats() {
+        if (isBound && syncService != null && syncService.getSyncManager() != null) {
+            return syncService.getSyncManager().getSchedulerStats();
+        }
+        return Collections.emptyMap();
+    }
+    
+    /**
+     * Get entity cache hit/miss counters per table
+     */
+    public Map<String, EntityCache.Stats> getCacheStats() {
+        return EntityCache.getInstance(AppDatabase.getInstance(context)).getStats();
+    }
+    
+    /**
+     * Record per-call network phase timings (off by default)
+     */
+    public void setNetworkTracingEnabled(boolean enabled) {
+        NetworkTracer.getInstance().setEnabled(enabled);
+    }
+    
+    public List<NetworkTracer.CallTrace> getNetworkTraces() {
+        return NetworkTracer.getInstance().getTraces();
+    }
+    
+    /**
+     * Write the buffered network traces as JSON to the app's files directory
+     * @return The file written
+     */
+    public File dumpNetworkTraces() throws IOException {
+        File file = new File(context.getFilesDir(), "network-traces-" + System.currentTimeMillis() + ".json");
+        NetworkTracer.getInstance().dumpToFile(file);
+        return file;
+    }
+    
+    /**
+     * Get the current queue pressure (NORMAL, HIGH or FULL)
+     */
+    public OfflineSyncManager.QueuePressure getQueuePressure() {
+        if (isBound && syncService != null && syncService.getSyncManager() != null) {
+            return syncService.getSyncManager().getQueuePressure();
+        }
+        return OfflineSyncManager.QueuePressure.NORMAL;
+    }
+    
+    /**
+     * Set listener for queue pressure changes and rejected operations
+     */
+    public void setQueuePressureListener(OfflineSyncManager.QueuePressureListener listener) {
+        synchronized (bindLock) {
+            queuePressureListener = listener;
+            if (isBound && syncService != null) {
+                applySettings(syncService.getSyncManager());
+            }
+        }
+    }
+    
+    /**
+     * Choose what happens to new operations when the queue is full. Takes effect as soon as
+     * the service is bound if it is not yet.
+     */
+    public void setBackpressurePolicy(OfflineSyncManager.BackpressurePolicy policy) {
+        synchronized (bindLock) {
+            backpressurePolicy = policy;
+            if (isBound && syncService != null) {
+                applySettings(syncService.getSyncManager());
+            }
+        }
+    }
+    
+    private void applySettings(OfflineSyncManager syncManager) {
+        if (syncManager == null) {
+            return;
+        }
+        syncManager.setQueuePressureListener(queuePressureListener);
+        if (backpressurePolicy != null) {
+            syncManager.setBackpressurePolicy(backpressurePolicy);
+        }
+    }
+    
+    /**
+     * Apply server changes as they happen over Supabase Realtime
+     */
+    public void setRealtimeEnabled(boolean enabled) {
+        if (isBound && syncService != null && syncService.getSyncManager() != null) {
+            syncService.getSyncManager().setRealtimeEnabled(enabled);
+        }
+    }
+    
+    /**
+     * Upload each batch of queued operations as one all-or-nothing request
+     */
+    public void setBatchModeEnabled(boolean enabled) {
+        if (isBound && syncService != null && syncService.getSyncManager() != null) {
+            syncService.getSyncManager().setBatchModeEnabled(enabled);
+        }
+    }
+    
     /**
      * Set sync listener for callbacks
      */
@@ -200,8 +445,8 @@ public class OfflineHelper {
         return getNetworkInfo().isSuitableForSync();
     }
     
-    private String generateTempId() {
-        return "temp_" + System.currentTimeMillis() + "_" + (int)(Math.random() * 1000);
+    private String generateRecordId() {
+        return TimeOrderedId.next();
     }
     
     /**
@@ -228,6 +473,37 @@ public class OfflineHelper {
         queueCreate(OfflineConfig.TABLE_SALES, saleData, priority);
     }
     
+    /**
+     * Queue a sale together with the stock movement it causes. Both travel in one queue item,
+     * are sent in one request and are retried and conflict-resolved as one unit.
+     * @param stockMovement a "removed" stock record whose fragrance_distribution holds the
+     *                      quantity taken from each fragrance
+     */
+    public void queueSaleWithStock(Object saleData, Object stockMovement, boolean isHighPriority) {
+        int priority = isHighPriority ? OfflineConfig.PRIORITY_HIGH : OfflineConfig.PRIORITY_MEDIUM;
+        JsonObject unit = new JsonObject();
+        unit.add("sale", gson.toJsonTree(saleData));
+        unit.add("movement", gson.toJsonTree(stockMovement));
+        
+        OfflineSyncManager.PendingOperation op = saleWithStockOperation(unit, priority);
+        queueOperation(op.operationType, op.tableName, op.recordId, op.data, op.priority);
+    }
+    
+    /**
+     * Build a SALE_WITH_STOCK for a batch from { sale, movement }, assigning client ids to
+     * both parts when they have none
+     */
+    public OfflineSyncManager.PendingOperation saleWithStockOperation(JsonElement unit, int priority) {
+        if (!unit.isJsonObject() || !unit.getAsJsonObject().has("sale")
+                || !unit.getAsJsonObject().has("movement")) {
+            throw new IllegalArgumentException("SALE_WITH_STOCK needs a sale and a movement");
+        }
+        String saleId = ensureRecordId(unit.getAsJsonObject().get("sale"));
+        ensureRecordId(unit.getAsJsonObject().get("movement"));
+        return new OfflineSyncManager.PendingOperation(
+            OfflineConfig.OP_SALE_WITH_STOCK, OfflineConfig.TABLE_SALES, saleId, gson.toJson(unit), priority);
+    }
+    
     /**
      * Queue an order for offline sync
      */
@@ -3,18 +3,22 @@ package com.example.app.offline;
 import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
-import android.util.Log;
 
 import com.example.app.database.AppDatabase;
 import com.example.app.database.dao.OfflineQueueDao;
+import com.example.app.database.entity.DeadLetterItem;
 import com.example.app.database.entity.OfflineQueueItem;
 import com.google.gson.Gson;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -22,6 +26,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public class OfflineSyncManager implements NetworkQualityMonitor.NetworkQualityListener {
     private static final String TAG = "OfflineSyncManager";
+    private static final String RETRY_LEASE_SUFFIX = "/retry";
+    private static final SyncLog.Sampler queueLog = new SyncLog.Sampler(TAG, OfflineConfig.LOG_SAMPLE_RATE);
+    private static final SyncLog.Sampler itemLog = new SyncLog.Sampler(TAG, OfflineConfig.LOG_SAMPLE_RATE);
     
     private final Context context;
     private final AppDatabase database;
@@ -29,16 +36,54 @@ public class OfflineSyncManager implements NetworkQualityMonitor.NetworkQualityL
     private final SupabaseApiClient apiClient;
     private final NetworkQualityMonitor networkMonitor;
     private final ConflictResolver conflictResolver;
+    private final QueueScheduler scheduler;
+    private final TempIdRemapper idRemapper;
+    private final QueueCompactor compactor;
+    private final QueueCounters queueCounters;
+    private final DeadLetterQueue deadLetters;
+    private final SnapshotBootstrapper bootstrapper;
+    private final RealtimeClient realtimeClient;
     private final Gson gson;
     
-    private final ExecutorService executorService;
+    private final ExecutorService networkExecutor;   // Sync passes and downloads
+    private final ExecutorService databaseExecutor;  // Queue writes, never stuck behind a socket
     private final Handler mainHandler;
     
     private final AtomicBoolean isSyncing = new AtomicBoolean(false);
     private final AtomicBoolean isNetworkAvailable = new AtomicBoolean(false);
+    private final AtomicBoolean restartRequested = new AtomicBoolean(false);
+    private volatile AtomicBoolean currentPassCancel;  // Cancellation token of the running pass
+    
+    private final String workerId = UUID.randomUUID().toString();
+    private final Runnable leaseSweep = new Runnable() {
+        @Override
+        public void run() {
+            if (databaseExecutor.isShutdown()) {
+                return;
+            }
+            databaseExecutor.execute(() -> sweepExpiredLeases());
+            mainHandler.postDelayed(this, OfflineConfig.LEASE_SWEEP_INTERVAL);
+        }
+    };
+    
+    private final Object admissionLock = new Object();
+    private volatile QueuePressure queuePressure = QueuePressure.NORMAL;
+    private volatile BackpressurePolicy backpressurePolicy = BackpressurePolicy.REJECT;
+    private final List<BlockedOperation> blockedOperations = new ArrayList<>(); // Guarded by admissionLock
+    private final Runnable blockedOperationsTimeout = new Runnable() {
+        @Override
+        public void run() {
+            if (!databaseExecutor.isShutdown()) {
+                databaseExecutor.execute(() -> admitBlockedOperations());
+            }
+        }
+    };
+    private volatile boolean batchModeEnabled = false;
+    // Set when pending items may share a record, so a full queue is only compacted when it can shrink
+    private volatile boolean compactionDue = true;
     
     private SyncListener syncListener;
-    private Future<?> currentSyncTask;
+    private QueuePressureListener queuePressureListener;
     
     public interface SyncListener {
         void onSyncStarted();
@@ -48,6 +93,55 @@ public class OfflineSyncManager implements NetworkQualityMonitor.NetworkQualityL
         void onNetworkStatusChanged(boolean available, NetworkQualityMonitor.NetworkInfo networkInfo);
     }
     
+    /**
+     * What to do with a new operation once the queue is full and compaction freed no space
+     */
+    public enum BackpressurePolicy {
+        REJECT,                     // Refuse the new operation
+        BLOCK,                      // Wait up to BACKPRESSURE_BLOCK_TIMEOUT for the sync to free space, then refuse
+        DROP_OLDEST_LOW_PRIORITY    // Dead-letter the oldest pending item of equal or lower priority
+    }
+    
+    public enum QueuePressure {
+        NORMAL, HIGH, FULL
+    }
+    
+    public interface QueuePressureListener {
+        void onQueuePressureChanged(QueuePressure pressure, int queueSize);
+        void onOperationRejected(String operationType, String tableName, String recordId);
+        void onOperationEvicted(OfflineQueueItem evicted);
+    }
+    
+    /**
+     * One operation of a batch passed to {@link #queueOperations}
+     */
+    public static class PendingOperation {
+        public final String operationType;
+        public final String tableName;
+        public final String recordId;
+        public final String data;
+        public final int priority;
+        
+        public PendingOperation(String operationType, String tableName, String recordId,
+                                String data, int priority) {
+            this.operationType = operationType;
+            this.tableName = tableName;
+            this.recordId = recordId;
+            this.data = data;
+            this.priority = priority;
+        }
+    }
+    
+    private static class BlockedOperation {
+        final PendingOperation operation;
+        final long deadline;
+        
+        BlockedOperation(PendingOperation operation, long deadline) {
+            this.operation = operation;
+            this.deadline = deadline;
+        }
+    }
+    
     public static class SyncResult {
         public final int totalItems;
         public final int successfulItems;
@@ -75,50 +169,66 @@ public class OfflineSyncManager implements NetworkQualityMonitor.NetworkQualityL
         this.context = context.getApplicationContext();
         this.database = AppDatabase.getInstance(context);
         this.queueDao = database.offlineQueueDao();
-        this.apiClient = new SupabaseApiClient(context);
+        this.apiClient = SupabaseApiClient.getInstance(context);
         this.networkMonitor = new NetworkQualityMonitor(context);
         this.conflictResolver = new ConflictResolver();
+        this.scheduler = new QueueScheduler();
+        this.idRemapper = new TempIdRemapper(database);
+        this.compactor = new QueueCompactor(database);
+        this.queueCounters = QueueCounters.getInstance(database);
+        this.deadLetters = new DeadLetterQueue(database);
+        this.bootstrapper = SnapshotBootstrapper.getInstance(context);
+        this.realtimeClient = new RealtimeClient(database, apiClient, bootstrapper,
+            SupabaseApiClient.DEFAULT_REALTIME_URL, SupabaseApiClient.DEFAULT_API_KEY);
         this.gson = new Gson();
         
-        this.executorService = Executors.newFixedThreadPool(OfflineConfig.MAX_CONCURRENT_OPERATIONS);
+        this.networkExecutor = Executors.newSingleThreadExecutor();
+        this.databaseExecutor = Executors.newSingleThreadExecutor();
         this.mainHandler = new Handler(Looper.getMainLooper());
         
+        // Recover items stranded in processing by a crash, then keep sweeping
+        mainHandler.post(leaseSweep);
+        
         // Start monitoring network
         networkMonitor.startMonitoring(this);
     }
     
+    /**
+     * True for the operation types the sync knows how to send
+     */
+    public static boolean isSupportedOperation(String operationType) {
+        return OfflineConfig.OP_CREATE.equals(operationType)
+            || OfflineConfig.OP_UPDATE.equals(operationType)
+            || OfflineConfig.OP_DELETE.equals(operationType)
+            || OfflineConfig.OP_SALE_WITH_STOCK.equals(operationType);
+    }
+    
     /**
      * Add an operation to the offline queue
      */
     public void queueOperation(String operationType, String tableName, String recordId, 
                               String data, int priority) {
-        executorService.execute(() -> {
+        PendingOperation op = new PendingOperation(operationType, tableName, recordId, data, priority);
+        databaseExecutor.execute(() -> {
             try {
-                // Check if similar operation already exists
-                List<OfflineQueueItem> existingItems = queueDao.getItemsByTableAndRecord(tableName, recordId);
-                
-                // Remove duplicate pending operations for the same record
-                for (OfflineQueueItem existing : existingItems) {
-                    if (OfflineConfig.STATUS_PENDING.equals(existing.status) && 
-                        operationType.equals(existing.operationType)) {
-                        queueDao.deleteItem(existing);
-                        Log.d(TAG, "Removed duplicate operation: " + existing.id);
+                synchronized (admissionLock) {
+                    boolean block = backpressurePolicy == BackpressurePolicy.BLOCK;
+                    if (block && !blockedOperations.isEmpty()) {
+                        // Stay behind the operations already waiting for space
+                        blockOperation(op);
+                        return;
+                    }
+                    if (!admitToQueue(priority)) {
+                        if (block) {
+                            blockOperation(op);
+                        } else {
+                            rejectOperation(op);
+                        }
+                        return;
                     }
+                    insertQueueItem(operationType, tableName, recordId, data, priority);
                 }
-                
-                // Create new queue item
-                OfflineQueueItem item = new OfflineQueueItem();
-                item.operationType = operationType;
-                item.tableName = tableName;
-                item.recordId = recordId;
-                item.data = data;
-                item.priority = priority;
-                item.status = OfflineConfig.STATUS_PENDING;
-                item.createdAt = new Date();
-                item.retryCount = 0;
-                
-                queueDao.insertItem(item);
-                Log.d(TAG, "Queued operation: " + operationType + " on " + tableName + ":" + recordId);
+                refreshQueuePressure();
                 
                 // Trigger sync if network is available
                 if (isNetworkAvailable.get()) {
@@ -126,7 +236,277 @@ public class OfflineSyncManager implements NetworkQualityMonitor.NetworkQualityL
                 }
                 
             } catch (Exception e) {
-                Log.e(TAG, "Error queueing operation", e);
+                SyncLog.e(TAG, "Error queueing operation", e);
+            }
+        });
+    }
+    
+    /**
+     * Add a batch of operations in one transaction. Blocks the calling thread, so call it
+     * from a background executor.
+     * @return Number of operations admitted to the queue
+     */
+    public int queueOperations(List<PendingOperation> operations) {
+        final List<PendingOperation> overflow = new ArrayList<>();
+        final int[] admitted = {0};
+        
+        synchronized (admissionLock) {
+            queueCounters.write(delta -> database.runInTransaction(() -> {
+                int size = queueCounters.getQueueSize();
+                for (PendingOperation op : operations) {
+                    if (size >= OfflineConfig.MAX_QUEUE_SIZE) {
+                        overflow.add(op);
+                        continue;
+                    }
+                    insertQueueItem(op.operationType, op.tableName, op.recordId, op.data, op.priority);
+                    size++;
+                    admitted[0]++;
+                }
+            }));
+            
+            // The backpressure policy may wait for the sync to drain, so it runs outside the transaction
+            for (PendingOperation op : overflow) {
+                boolean admit = admitToQueue(op.priority)
+                    || (backpressurePolicy == BackpressurePolicy.BLOCK && awaitSpace());
+                if (admit) {
+                    insertQueueItem(op.operationType, op.tableName, op.recordId, op.data, op.priority);
+                    admitted[0]++;
+                } else {
+                    rejectOperation(op);
+                }
+            }
+        }
+        refreshQueuePressure();
+        
+        SyncLog.d(TAG, "Queued batch: {}/{} operations admitted", admitted[0], operations.size());
+        if (admitted[0] > 0 && isNetworkAvailable.get()) {
+            startSync();
+        }
+        return admitted[0];
+    }
+    
+    private void insertQueueItem(String operationType, String tableName, String recordId,
+                                 String data, int priority) {
+        queueCounters.write(delta -> database.runInTransaction(() -> {
+            // Check if similar operation already exists
+            List<OfflineQueueItem> existingItems = queueDao.getItemsByTableAndRecord(tableName, recordId);
+            
+            // Remove duplicate pending operations for the same record
+            for (OfflineQueueItem existing : existingItems) {
+                if (OfflineConfig.STATUS_PENDING.equals(existing.status) && 
+                    operationType.equals(existing.operationType)) {
+                    queueDao.deleteItem(existing);
+                    delta.remove(existing);
+                    if (SyncLog.DEBUG) {
+                        SyncLog.d(TAG, "Removed duplicate operation: {}", existing.id);
+                    }
+                }
+            }
+            
+            for (OfflineQueueItem existing : existingItems) {
+                if (OfflineConfig.STATUS_PENDING.equals(existing.status)
+                        && !operationType.equals(existing.operationType)) {
+                    compactionDue = true;
+                    break;
+                }
+            }
+            
+            // Create new queue item
+            OfflineQueueItem item = new OfflineQueueItem();
+            item.operationType = operationType;
+            item.tableName = tableName;
+            item.recordId = recordId;
+            item.setData(data);
+            item.priority = priority;
+            item.status = OfflineConfig.STATUS_PENDING;
+            item.createdAt = new Date();
+            item.retryCount = 0;
+            
+            queueDao.insertItem(item);
+            delta.add(item);
+        }));
+        queueLog.d("Queued operation: {} on {}:{}", operationType, tableName, recordId);
+    }
+    
+    /**
+     * Make room for one more item: compact if anything became compactable since the last
+     * compaction, then apply the backpressure policy. A full queue is therefore scanned once,
+     * not on every admission. Never waits; with BLOCK the caller waits for the sync to free space.
+     * @return false if there is no room for the operation
+     */
+    private boolean admitToQueue(int priority) {
+        if (queueCounters.getQueueSize() < OfflineConfig.MAX_QUEUE_SIZE) {
+            return true;
+        }
+        
+        if (compactionDue) {
+            compactionDue = false;
+            int removed = compactor.compact();
+            if (removed > 0 && queueCounters.getQueueSize() < OfflineConfig.MAX_QUEUE_SIZE) {
+                return true;
+            }
+        }
+        
+        switch (backpressurePolicy) {
+            case DROP_OLDEST_LOW_PRIORITY:
+                OfflineQueueItem victim = queueDao.getOldestDroppableItem(priority);
+                if (victim != null) {
+                    // Evicted work stays replayable from the dead-letter store
+                    deadLetters.bury(victim, "Evicted: queue full", DeadLetterQueue.STATUS_EVICTED);
+                    SyncLog.w(TAG, "Queue full, evicted item {} ({} on {}, priority {})",
+                              victim.id, victim.operationType, victim.tableName, victim.priority);
+                    notifyOnMainThread(() -> {
+                        if (queuePressureListener != null) {
+                            queuePressureListener.onOperationEvicted(victim);
+                        }
+                    });
+                    return true;
+                }
+                return false;
+            case BLOCK:
+            case REJECT:
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * Wait until the sync frees space or BACKPRESSURE_BLOCK_TIMEOUT passes. Called holding
+     * admissionLock, which is released while waiting; never called on databaseExecutor.
+     */
+    private boolean awaitSpace() {
+        long deadline = System.currentTimeMillis() + OfflineConfig.BACKPRESSURE_BLOCK_TIMEOUT;
+        while (queueCounters.getQueueSize() >= OfflineConfig.MAX_QUEUE_SIZE) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            try {
+                admissionLock.wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Park an operation until the sync frees space, instead of waiting on databaseExecutor.
+     * Called holding admissionLock.
+     */
+    private void blockOperation(PendingOperation op) {
+        blockedOperations.add(new BlockedOperation(op,
+            System.currentTimeMillis() + OfflineConfig.BACKPRESSURE_BLOCK_TIMEOUT));
+        mainHandler.postDelayed(blockedOperationsTimeout, OfflineConfig.BACKPRESSURE_BLOCK_TIMEOUT);
+    }
+    
+    /**
+     * Queue parked operations in arrival order while there is room and reject those past
+     * their deadline. Runs on databaseExecutor.
+     */
+    private void admitBlockedOperations() {
+        int admitted = 0;
+        try {
+            synchronized (admissionLock) {
+                long now = System.currentTimeMillis();
+                Iterator<BlockedOperation> iterator = blockedOperations.iterator();
+                while (iterator.hasNext()) {
+                    BlockedOperation blocked = iterator.next();
+                    PendingOperation op = blocked.operation;
+                    if (queueCounters.getQueueSize() < OfflineConfig.MAX_QUEUE_SIZE) {
+                        insertQueueItem(op.operationType, op.tableName, op.recordId, op.data, op.priority);
+                        iterator.remove();
+                        admitted++;
+                    } else if (blocked.deadline <= now) {
+                        iterator.remove();
+                        rejectOperation(op);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            SyncLog.e(TAG, "Error admitting blocked operations", e);
+        }
+        
+        if (admitted > 0) {
+            refreshQueuePressure();
+            if (isNetworkAvailable.get()) {
+                startSync();
+            }
+        }
+    }
+    
+    /**
+     * Wake callers waiting for space under the BLOCK policy; the sync calls this as it drains
+     */
+    private void signalSpaceFreed() {
+        synchronized (admissionLock) {
+            admissionLock.notifyAll();
+            if (blockedOperations.isEmpty()) {
+                return;
+            }
+        }
+        if (!databaseExecutor.isShutdown()) {
+            databaseExecutor.execute(this::admitBlockedOperations);
+        }
+    }
+    
+    private void rejectOperation(PendingOperation op) {
+        SyncLog.w(TAG, "Queue full, rejected {} on {}:{}", op.operationType, op.tableName, op.recordId);
+        notifyOnMainThread(() -> {
+            if (queuePressureListener != null) {
+                queuePressureListener.onOperationRejected(op.operationType, op.tableName, op.recordId);
+            }
+        });
+    }
+    
+    private void refreshQueuePressure() {
+        int size = queueCounters.getQueueSize();
+        
+        QueuePressure pressure;
+        if (size >= OfflineConfig.MAX_QUEUE_SIZE) {
+            pressure = QueuePressure.FULL;
+        } else if (size >= OfflineConfig.MAX_QUEUE_SIZE * OfflineConfig.QUEUE_HIGH_WATERMARK) {
+            pressure = QueuePressure.HIGH;
+        } else {
+            pressure = QueuePressure.NORMAL;
+        }
+        
+        if (pressure != queuePressure) {
+            queuePressure = pressure;
+            notifyOnMainThread(() -> {
+                if (queuePressureListener != null) {
+                    queuePressureListener.onQueuePressureChanged(pressure, size);
+                }
+            });
+        }
+    }
+    
+    /**
+     * Bring the local store up to date from the server: a full snapshot on first launch,
+     * afterwards only the rows changed since the stored watermarks. Local changes are
+     * pushed once the download finishes. Progress is reported on the loading thread.
+     */
+    public void refreshFromServer(SnapshotBootstrapper.ProgressListener progressListener) {
+        networkExecutor.execute(() -> {
+            try {
+                if (!bootstrapper.isBootstrapped()) {
+                    bootstrapper.bootstrap(progressListener);
+                } else {
+                    bootstrapper.pullChanges(progressListener);
+                }
+            } catch (Exception e) {
+                SyncLog.e(TAG, "Error refreshing from server", e);
+                notifyOnMainThread(() -> {
+                    if (syncListener != null) {
+                        syncListener.onSyncError("Download failed: " + e.getMessage());
+                    }
+                });
+                return;
+            }
+            
+            if (isNetworkAvailable.get()) {
+                startSync();
             }
         });
     }
@@ -136,38 +516,54 @@ public class OfflineSyncManager implements NetworkQualityMonitor.NetworkQualityL
      */
     public void startSync() {
         if (isSyncing.getAndSet(true)) {
-            Log.d(TAG, "Sync already in progress");
+            AtomicBoolean running = currentPassCancel;
+            if (running != null && running.get()) {
+                // A stopped pass is still winding down; run again once it has exited
+                restartRequested.set(true);
+                if (!isSyncing.get() && restartRequested.getAndSet(false)) {
+                    startSync();
+                }
+                return;
+            }
+            SyncLog.d(TAG, "Sync already in progress");
             return;
         }
         
         if (!isNetworkAvailable.get()) {
-            Log.d(TAG, "No network available for sync");
+            SyncLog.d(TAG, "No network available for sync");
             isSyncing.set(false);
             return;
         }
         
-        Log.d(TAG, "Starting sync process");
+        SyncLog.d(TAG, "Starting sync process");
         notifyOnMainThread(() -> {
             if (syncListener != null) {
                 syncListener.onSyncStarted();
             }
         });
         
-        currentSyncTask = executorService.submit(this::performSync);
+        AtomicBoolean cancel = new AtomicBoolean(false);
+        currentPassCancel = cancel;
+        networkExecutor.execute(() -> performSync(cancel));
     }
     
     /**
-     * Stop ongoing synchronization
+     * Stop ongoing synchronization. In-flight requests, a snapshot download included, are
+     * aborted at once and the item being sent goes back to pending. isSyncing stays set until the pass has actually exited.
      */
     public void stopSync() {
-        if (currentSyncTask != null && !currentSyncTask.isDone()) {
-            currentSyncTask.cancel(true);
-            Log.d(TAG, "Sync cancelled");
+        AtomicBoolean cancel = currentPassCancel;
+        if (cancel != null && !cancel.getAndSet(true) && isSyncing.get()) {
+            SyncLog.d(TAG, "Sync cancelled");
         }
-        isSyncing.set(false);
+        apiClient.cancelInFlight();
     }
     
-    private void performSync() {
+    /**
+     * One sync pass. It stops at the next item boundary once its own cancellation token is
+     * set; a later pass gets a fresh token, so a late stopSync cannot leak into it.
+     */
+    private void performSync(AtomicBoolean cancel) {
         long startTime = System.currentTimeMillis();
         int totalItems = 0;
         int successfulItems = 0;
@@ -176,30 +572,51 @@ public class OfflineSyncManager implements NetworkQualityMonitor.NetworkQualityL
         String errorMessage = null;
         
         try {
-            // Get pending items ordered by priority
-            List<OfflineQueueItem> pendingItems = queueDao.getPendingItems();
+            // Get pending items in weighted fair order, with creates ahead of the items referencing them
+            idRemapper.loadMappings();
+            List<OfflineQueueItem> pendingItems = idRemapper.orderByDependencies(
+                scheduler.schedule(queueDao.getPendingItems()));
             totalItems = pendingItems.size();
             
-            Log.d(TAG, "Processing " + totalItems + " pending items");
+            SyncLog.d(TAG, "Processing {} pending items", totalItems);
             
             if (totalItems == 0) {
-                Log.d(TAG, "No pending items to sync");
+                SyncLog.d(TAG, "No pending items to sync");
                 return;
             }
             
             // Process items in batches
             for (int i = 0; i < pendingItems.size(); i += OfflineConfig.BATCH_SIZE) {
-                if (Thread.currentThread().isInterrupted()) {
-                    Log.d(TAG, "Sync interrupted");
+                if (cancel.get()) {
+                    SyncLog.d(TAG, "Sync interrupted");
+                    errorMessage = "Sync cancelled";
                     break;
                 }
                 
                 int endIndex = Math.min(i + OfflineConfig.BATCH_SIZE, pendingItems.size());
-                List<OfflineQueueItem> batch = pendingItems.subList(i, endIndex);
+                List<OfflineQueueItem> batch = claimBatch(pendingItems.subList(i, endIndex));
+                
+                // All-or-nothing upload; a rolled-back batch is retried item by item below
+                if (batchModeEnabled && syncBatch(batch, cancel)) {
+                    successfulItems += batch.size();
+                    final int currentCompleted = successfulItems + failedItems + conflictItems;
+                    final int currentTotal = totalItems;
+                    notifyOnMainThread(() -> {
+                        if (syncListener != null) {
+                            syncListener.onSyncProgress(currentCompleted, currentTotal);
+                        }
+                    });
+                    continue;
+                }
                 
                 for (OfflineQueueItem item : batch) {
+                    if (cancel.get()) {
+                        break;
+                    }
                     try {
-                        SyncItemResult result = syncItem(item);
+                        scheduler.recordDispatch(item);
+                        SyncItemResult result = syncTraced(item);
+                        scheduler.recordOutcome(item, result.status == SyncItemStatus.SUCCESS);
                         
                         switch (result.status) {
                             case SUCCESS:
@@ -223,16 +640,19 @@ public class OfflineSyncManager implements NetworkQualityMonitor.NetworkQualityL
                         });
                         
                     } catch (Exception e) {
-                        Log.e(TAG, "Error syncing item: " + item.id, e);
+                        SyncLog.e(TAG, "Error syncing item: {}", item.id, e);
                         failedItems++;
-                        updateItemStatus(item, OfflineConfig.STATUS_FAILED, e.getMessage());
+                        scheduler.recordOutcome(item, false);
+                        DeadLetterQueue.recordAttempt(item, -1, e.getMessage());
+                        deadLetters.bury(item, e.getMessage(), -1);
                     }
                 }
+                signalSpaceFreed();
                 
                 // Check network quality between batches
                 NetworkQualityMonitor.NetworkInfo networkInfo = networkMonitor.getCurrentNetworkInfo();
                 if (!networkInfo.isSuitableForSync()) {
-                    Log.w(TAG, "Network quality degraded, pausing sync");
+                    SyncLog.w(TAG, "Network quality degraded, pausing sync");
                     break;
                 }
             }
@@ -241,28 +661,35 @@ public class OfflineSyncManager implements NetworkQualityMonitor.NetworkQualityL
             cleanupCompletedItems();
             
         } catch (Exception e) {
-            Log.e(TAG, "Error during sync", e);
+            SyncLog.e(TAG, "Error during sync", e);
             errorMessage = e.getMessage();
         } finally {
-            isSyncing.set(false);
+            releaseUnprocessedItems();
+            refreshQueuePressure();
+            signalSpaceFreed();
             
             long syncDuration = System.currentTimeMillis() - startTime;
             SyncResult result = new SyncResult(totalItems, successfulItems, failedItems, 
                                              conflictItems, syncDuration, errorMessage);
             
-            Log.d(TAG, "Sync completed: " + successfulItems + "/" + totalItems + " successful, " +
-                      failedItems + " failed, " + conflictItems + " conflicts in " + syncDuration + "ms");
+            SyncLog.d(TAG, "Sync completed: {}/{} successful, {} failed, {} conflicts in {}ms",
+                      successfulItems, totalItems, failedItems, conflictItems, syncDuration);
             
             notifyOnMainThread(() -> {
                 if (syncListener != null) {
                     syncListener.onSyncCompleted(result);
                 }
             });
+            
+            isSyncing.set(false);
+            if (restartRequested.getAndSet(false) && !networkExecutor.isShutdown()) {
+                startSync();
+            }
         }
     }
     
     private enum SyncItemStatus {
-        SUCCESS, FAILED, CONFLICT, RETRY
+        SUCCESS, FAILED, CONFLICT, RETRY, CANCELLED
     }
     
     private static class SyncItemResult {
@@ -275,30 +702,61 @@ public class OfflineSyncManager implements NetworkQualityMonitor.NetworkQualityL
         }
     }
     
+    private SyncItemResult syncTraced(OfflineQueueItem item) {
+        apiClient.setTraceTag(new NetworkTracer.TraceTag(item.id, item.tableName));
+        try {
+            return syncItem(item);
+        } finally {
+            apiClient.setTraceTag(null);
+        }
+    }
+    
     private SyncItemResult syncItem(OfflineQueueItem item) {
-        Log.d(TAG, "Syncing item: " + item.id + " (" + item.operationType + " on " + item.tableName + ")");
+        if (SyncLog.DEBUG) {
+            itemLog.d("Syncing item: {} ({} on {})", item.id, item.operationType, item.tableName);
+        }
+        
+        // The batch lease may be close to expiry after earlier items; extend it before sending
+        if (queueDao.renewLease(item.id, workerId, System.currentTimeMillis() + OfflineConfig.LEASE_DURATION) == 0) {
+            return new SyncItemResult(SyncItemStatus.CANCELLED, "Lease lost");
+        }
         
-        // Mark as processing
-        updateItemStatus(item, OfflineConfig.STATUS_PROCESSING, null);
+        // Apply server ids learned earlier in this pass
+        idRemapper.resolve(item);
         
         try {
             SupabaseApiClient.ApiResponse response = null;
             
             switch (item.operationType) {
                 case OfflineConfig.OP_CREATE:
-                    response = apiClient.createRecord(item.tableName, item.data);
+                    response = apiClient.createRecord(item.tableName, item.getData());
                     break;
                 case OfflineConfig.OP_UPDATE:
-                    response = apiClient.updateRecord(item.tableName, item.recordId, item.data);
+                    response = apiClient.updateRecord(item.tableName, item.recordId, item.getData());
                     break;
                 case OfflineConfig.OP_DELETE:
                     response = apiClient.deleteRecord(item.tableName, item.recordId);
                     break;
+                case OfflineConfig.OP_SALE_WITH_STOCK:
+                    response = apiClient.recordSaleWithStock(item.getData());
+                    break;
                 default:
-                    return new SyncItemResult(SyncItemStatus.FAILED, "Unknown operation type: " + item.operationType);
+                    // Retrying cannot help; move it out of the queue instead of failing it every pass
+                    String reason = "Unknown operation type: " + item.operationType;
+                    deadLetters.bury(item, reason, -1);
+                    return new SyncItemResult(SyncItemStatus.FAILED, reason);
+            }
+            
+            if (response.cancelled) {
+                // Aborted by stopSync: not an attempt, so hand the item back untouched
+                updateItemStatus(item, OfflineConfig.STATUS_PENDING, null);
+                return new SyncItemResult(SyncItemStatus.CANCELLED, "Cancelled");
             }
             
             if (response.success) {
+                if (OfflineConfig.OP_CREATE.equals(item.operationType)) {
+                    idRemapper.onCreateSucceeded(item, response.data);
+                }
                 updateItemStatus(item, OfflineConfig.STATUS_COMPLETED, null);
                 return new SyncItemResult(SyncItemStatus.SUCCESS, "Operation completed successfully");
             } else {
@@ -310,8 +768,52 @@ public class OfflineSyncManager implements NetworkQualityMonitor.NetworkQualityL
         }
     }
     
+    /**
+     * Send a claimed batch through the transactional RPC
+     * @return true if every item was committed; false leaves the items claimed and untouched
+     */
+    private boolean syncBatch(List<OfflineQueueItem> batch, AtomicBoolean cancel) {
+        if (batch.size() < 2 || cancel.get()) {
+            return false;
+        }
+        
+        List<SupabaseApiClient.BatchOperation> operations = new ArrayList<>(batch.size());
+        for (OfflineQueueItem item : batch) {
+            if (!isSupportedOperation(item.operationType)) {
+                return false;
+            }
+            idRemapper.resolve(item);
+            operations.add(new SupabaseApiClient.BatchOperation(
+                item.operationType, item.tableName, item.recordId, item.getData()));
+        }
+        
+        SupabaseApiClient.BatchResult result = apiClient.applyBatch(operations);
+        if (!result.committed) {
+            if (!result.cancelled) {
+                SyncLog.d(TAG, "Batch not committed ({}), sending items individually", result.error);
+            }
+            return false;
+        }
+        
+        queueCounters.write(delta -> database.runInTransaction(() -> {
+            for (int index = 0; index < batch.size(); index++) {
+                OfflineQueueItem item = batch.get(index);
+                if (OfflineConfig.OP_CREATE.equals(item.operationType)) {
+                    idRemapper.onCreateSucceeded(item, result.rows.get(index));
+                }
+                updateItemStatus(item, OfflineConfig.STATUS_COMPLETED, null);
+            }
+        }));
+        for (OfflineQueueItem item : batch) {
+            scheduler.recordDispatch(item);
+            scheduler.recordOutcome(item, true);
+        }
+        return true;
+    }
+    
     private SyncItemResult handleSyncError(OfflineQueueItem item, String error, int statusCode) {
         RetryStrategy retryStrategy = getRetryStrategy(item.priority);
+        DeadLetterQueue.recordAttempt(item, statusCode, error);
         
         if (statusCode == 409) { // Conflict
             return handleConflict(item, error);
@@ -325,8 +827,8 @@ public class OfflineSyncManager implements NetworkQualityMonitor.NetworkQualityL
             }
         }
         
-        // No more retries, mark as failed
-        updateItemStatus(item, OfflineConfig.STATUS_FAILED, error);
+        // No more retries, move out of the live queue
+        deadLetters.bury(item, error, statusCode);
         return new SyncItemResult(SyncItemStatus.FAILED, error);
     }
     
@@ -335,10 +837,17 @@ public class OfflineSyncManager implements NetworkQualityMonitor.NetworkQualityL
             // Fetch current remote data
             SupabaseApiClient.ApiResponse remoteResponse = apiClient.fetchRecords(
                 item.tableName, "id=eq." + item.recordId);
+            if (remoteResponse.cancelled) {
+                updateItemStatus(item, OfflineConfig.STATUS_PENDING, null);
+                return new SyncItemResult(SyncItemStatus.CANCELLED, "Cancelled");
+            }
             
             if (remoteResponse.success && remoteResponse.data != null) {
-                ConflictResolver.ConflictResult resolution = conflictResolver.resolveConflict(
-                    item.tableName, item.data, remoteResponse.data);
+                // A compound item is resolved on its sale; the movement travels with it
+                ConflictResolver.ConflictResult resolution =
+                    OfflineConfig.OP_SALE_WITH_STOCK.equals(item.operationType)
+                        ? conflictResolver.resolveSaleWithStockConflict(item.getData(), remoteResponse.data)
+                        : conflictResolver.resolveConflict(item.tableName, item.getData(), remoteResponse.data);
                 
                 switch (resolution.resolution) {
                     case USE_LOCAL:
@@ -350,12 +859,12 @@ public class OfflineSyncManager implements NetworkQualityMonitor.NetworkQualityL
                         return new SyncItemResult(SyncItemStatus.CONFLICT, "Used remote version");
                     case MERGE:
                         // Update item data with merged version and retry
-                        item.data = resolution.resolvedData;
+                        item.setData(resolution.resolvedData);
                         queueDao.updateItem(item);
                         return new SyncItemResult(SyncItemStatus.RETRY, "Merged changes");
                     case MANUAL:
                         // Requires manual intervention
-                        updateItemStatus(item, OfflineConfig.STATUS_FAILED, "Manual conflict resolution required: " + resolution.conflictReason);
+                        deadLetters.bury(item, "Manual conflict resolution required: " + resolution.conflictReason, 409);
                         return new SyncItemResult(SyncItemStatus.CONFLICT, "Manual resolution required");
                     case SKIP:
                         updateItemStatus(item, OfflineConfig.STATUS_CANCELLED, "Conflict skipped");
@@ -363,31 +872,139 @@ public class OfflineSyncManager implements NetworkQualityMonitor.NetworkQualityL
                 }
             }
         } catch (Exception e) {
-            Log.e(TAG, "Error handling conflict", e);
+            SyncLog.e(TAG, "Error handling conflict", e);
         }
         
-        updateItemStatus(item, OfflineConfig.STATUS_FAILED, "Conflict resolution failed");
+        deadLetters.bury(item, "Conflict resolution failed", 409);
         return new SyncItemResult(SyncItemStatus.CONFLICT, "Conflict resolution failed");
     }
     
     private void scheduleRetry(OfflineQueueItem item, long delay) {
+        // Hold the item under a separate lease for the backoff; if the process dies first the
+        // sweeper returns it to pending once the delay has passed
+        String retryLease = workerId + RETRY_LEASE_SUFFIX;
+        long expiresAt = System.currentTimeMillis() + delay + OfflineConfig.LEASE_DURATION;
+        if (queueDao.holdForRetry(item.id, item.leaseOwner, retryLease, expiresAt, item.attemptHistory) == 0) {
+            // The sweeper already returned it to pending
+            return;
+        }
+        item.leaseOwner = retryLease;
+        item.leaseExpiresAt = expiresAt;
+        
         mainHandler.postDelayed(() -> {
-            item.retryCount++;
-            item.lastRetry = new Date();
-            item.status = OfflineConfig.STATUS_PENDING;
-            queueDao.updateItem(item);
-            
-            Log.d(TAG, "Scheduled retry for item " + item.id + " (attempt " + item.retryCount + ")");
+            if (databaseExecutor.isShutdown()) {
+                return;
+            }
+            databaseExecutor.execute(() -> {
+                // Only the lease columns are touched; the in-memory copy may be stale by now
+                final boolean[] released = {false};
+                queueCounters.write(delta -> {
+                    released[0] = queueDao.releaseRetryLease(item.id, retryLease, System.currentTimeMillis()) == 1;
+                    if (released[0]) {
+                        compactionDue = true;
+                        item.status = OfflineConfig.STATUS_PENDING;
+                        delta.changeStatus(item, OfflineConfig.STATUS_PROCESSING);
+                    }
+                });
+                
+                if (SyncLog.DEBUG && released[0]) {
+                    itemLog.d("Scheduled retry for item {} (attempt {})", item.id, item.retryCount + 1);
+                }
+            });
         }, delay);
     }
     
-    private void updateItemStatus(OfflineQueueItem item, String status, String errorMessage) {
-        item.status = status;
-        item.errorMessage = errorMessage;
-        if (OfflineConfig.STATUS_PROCESSING.equals(status) || OfflineConfig.STATUS_FAILED.equals(status)) {
-            item.lastRetry = new Date();
+    /**
+     * Lease the still-pending items of a batch to this worker, keeping the scheduled order
+     */
+    private List<OfflineQueueItem> claimBatch(List<OfflineQueueItem> batch) {
+        List<Integer> ids = new ArrayList<>(batch.size());
+        for (OfflineQueueItem item : batch) {
+            ids.add(item.id);
         }
-        queueDao.updateItem(item);
+        
+        Map<Integer, OfflineQueueItem> claimed = new HashMap<>();
+        long expiresAt = System.currentTimeMillis() + OfflineConfig.LEASE_DURATION;
+        queueCounters.write(delta -> {
+            for (OfflineQueueItem item : queueDao.claimItems(ids, workerId, expiresAt)) {
+                claimed.put(item.id, item);
+                delta.changeStatus(item, OfflineConfig.STATUS_PENDING);
+            }
+        });
+        
+        List<OfflineQueueItem> ordered = new ArrayList<>(claimed.size());
+        for (OfflineQueueItem item : batch) {
+            OfflineQueueItem leased = claimed.get(item.id);
+            if (leased != null) {
+                ordered.add(leased);
+            }
+        }
+        if (ordered.size() < batch.size()) {
+            SyncLog.d(TAG, "{} items were already claimed elsewhere", batch.size() - ordered.size());
+        }
+        return ordered;
+    }
+    
+    private void releaseUnprocessedItems() {
+        try {
+            final int[] released = {0};
+            queueCounters.write(delta -> {
+                List<OfflineQueueItem> items = queueDao.releaseLeasedItems(workerId);
+                returnToPending(items, delta);
+                released[0] = items.size();
+            });
+            if (released[0] > 0) {
+                compactionDue = true;
+                SyncLog.d(TAG, "Released {} claimed items back to pending", released[0]);
+            }
+        } catch (Exception e) {
+            SyncLog.e(TAG, "Error releasing leases", e);
+        }
+    }
+    
+    private void sweepExpiredLeases() {
+        try {
+            final int[] reclaimed = {0};
+            queueCounters.write(delta -> {
+                List<OfflineQueueItem> items = queueDao.reclaimExpiredItems(System.currentTimeMillis());
+                returnToPending(items, delta);
+                reclaimed[0] = items.size();
+            });
+            if (reclaimed[0] > 0) {
+                compactionDue = true;
+                SyncLog.w(TAG, "Reclaimed {} items with expired leases", reclaimed[0]);
+            }
+        } catch (Exception e) {
+            SyncLog.e(TAG, "Error sweeping leases", e);
+        }
+    }
+    
+    /**
+     * Count items the DAO moved from processing back to pending
+     */
+    private static void returnToPending(List<OfflineQueueItem> items, QueueCounters.Delta delta) {
+        for (OfflineQueueItem item : items) {
+            String previousStatus = item.status;
+            item.status = OfflineConfig.STATUS_PENDING;
+            delta.changeStatus(item, previousStatus);
+        }
+    }
+    
+    private void updateItemStatus(OfflineQueueItem item, String status, String errorMessage) {
+        queueCounters.write(delta -> {
+            String previousStatus = item.status;
+            item.status = status;
+            item.errorMessage = errorMessage;
+            if (!OfflineConfig.STATUS_PROCESSING.equals(status)) {
+                item.leaseOwner = null;
+                item.leaseExpiresAt = null;
+            }
+            if (OfflineConfig.STATUS_PROCESSING.equals(status) || OfflineConfig.STATUS_FAILED.equals(status)) {
+                item.lastRetry = new Date();
+            }
+            queueDao.updateItem(item);
+            delta.changeStatus(item, previousStatus);
+        });
     }
     
     private RetryStrategy getRetryStrategy(int priority) {
@@ -407,15 +1024,20 @@ public class OfflineSyncManager implements NetworkQualityMonitor.NetworkQualityL
             long cutoffTime = System.currentTimeMillis() - (OfflineConfig.DAYS_TO_KEEP_COMPLETED * 24 * 60 * 60 * 1000L);
             
             List<OfflineQueueItem> completedItems = queueDao.getItemsByStatus(OfflineConfig.STATUS_COMPLETED);
-            for (OfflineQueueItem item : completedItems) {
-                if (item.createdAt != null && item.createdAt.getTime() < cutoffTime) {
-                    queueDao.deleteItem(item);
+            queueCounters.write(delta -> database.runInTransaction(() -> {
+                for (OfflineQueueItem item : completedItems) {
+                    if (item.createdAt != null && item.createdAt.getTime() < cutoffTime) {
+                        queueDao.deleteItem(item);
+                        delta.remove(item);
+                    }
                 }
-            }
+            }));
             
-            Log.d(TAG, "Cleanup completed");
+            idRemapper.pruneMappings(cutoffTime);
+            
+            SyncLog.d(TAG, "Cleanup completed");
         } catch (Exception e) {
-            Log.e(TAG, "Error during cleanup", e);
+            SyncLog.e(TAG, "Error during cleanup", e);
         }
     }
     
@@ -430,7 +1052,7 @@ public class OfflineSyncManager implements NetworkQualityMonitor.NetworkQualityL
     // NetworkQualityListener implementation
     @Override
     public void onNetworkQualityChanged(NetworkQualityMonitor.NetworkInfo networkInfo) {
-        Log.d(TAG, "Network quality changed: " + networkInfo.quality + " (" + networkInfo.type + ")");
+        SyncLog.d(TAG, "Network quality changed: {} ({})", networkInfo.quality, networkInfo.type);
         notifyOnMainThread(() -> {
             if (syncListener != null) {
                 syncListener.onNetworkStatusChanged(networkInfo.isConnected, networkInfo);
@@ -440,7 +1062,7 @@ public class OfflineSyncManager implements NetworkQualityMonitor.NetworkQualityL
     
     @Override
     public void onNetworkAvailable(NetworkQualityMonitor.NetworkInfo networkInfo) {
-        Log.d(TAG, "Network available: " + networkInfo.type + " (quality: " + networkInfo.quality + ")");
+        SyncLog.d(TAG, "Network available: {} (quality: {})", networkInfo.type, networkInfo.quality);
         isNetworkAvailable.set(true);
         
         notifyOnMainThread(() -> {
@@ -453,11 +1075,12 @@ public class OfflineSyncManager implements NetworkQualityMonitor.NetworkQualityL
         if (networkInfo.isSuitableForSync()) {
             startSync();
         }
+        realtimeClient.reconnectNow();
     }
     
     @Override
     public void onNetworkLost() {
-        Log.d(TAG, "Network lost");
+        SyncLog.d(TAG, "Network lost");
         isNetworkAvailable.set(false);
         
         notifyOnMainThread(() -> {
@@ -475,6 +1098,40 @@ public class OfflineSyncManager implements NetworkQualityMonitor.NetworkQualityL
         this.syncListener = listener;
     }
     
+    public void setQueuePressureListener(QueuePressureListener listener) {
+        this.queuePressureListener = listener;
+    }
+    
+    public void setBackpressurePolicy(BackpressurePolicy policy) {
+        this.backpressurePolicy = policy;
+    }
+    
+    /**
+     * Upload each claimed batch through one transactional request instead of one request per item
+     */
+    public void setBatchModeEnabled(boolean enabled) {
+        this.batchModeEnabled = enabled;
+    }
+    
+    /**
+     * Receive server changes over the realtime socket instead of waiting for the next pull
+     */
+    public void setRealtimeEnabled(boolean enabled) {
+        if (enabled) {
+            realtimeClient.start();
+        } else {
+            realtimeClient.stop();
+        }
+    }
+    
+    public RealtimeClient getRealtimeClient() {
+        return realtimeClient;
+    }
+    
+    public QueuePressure getQueuePressure() {
+        return queuePressure;
+    }
+    
     public boolean isSyncing() {
         return isSyncing.get();
     }
@@ -484,16 +1141,66 @@ public class OfflineSyncManager implements NetworkQualityMonitor.NetworkQualityL
     }
     
     public int getPendingItemsCount() {
-        return queueDao.getPendingCount();
+        return queueCounters.getPendingCount();
     }
     
     public int getFailedItemsCount() {
-        return queueDao.getFailedCount();
+        return queueCounters.getFailedCount();
+    }
+    
+    /**
+     * Per-class (priority:table) throughput and wait-time statistics of the queue scheduler
+     */
+    public Map<String, QueueScheduler.ClassStats> getSchedulerStats() {
+        return scheduler.getStats();
+    }
+    
+    /**
+     * Move matching dead letters back into the queue and start a sync. Blocking.
+     * Holds admissionLock so concurrent enqueues cannot take the room replay measured.
+     * @return Number of items replayed
+     */
+    public int replayDeadLetters(DeadLetterQueue.Filter filter) {
+        int replayed;
+        synchronized (admissionLock) {
+            replayed = deadLetters.replay(filter);
+            if (replayed > 0) {
+                compactionDue = true;
+            }
+        }
+        refreshQueuePressure();
+        if (replayed > 0 && isNetworkAvailable.get()) {
+            startSync();
+        }
+        return replayed;
+    }
+    
+    /**
+     * Permanently delete matching dead letters. Blocking.
+     * @return Number of items discarded
+     */
+    public int discardDeadLetters(DeadLetterQueue.Filter filter) {
+        return deadLetters.discard(filter);
+    }
+    
+    public List<DeadLetterItem> getDeadLetters(int limit) {
+        return database.deadLetterDao().getDeadLetters(limit);
+    }
+    
+    /**
+     * Lock-free counter totals per status, table and priority
+     */
+    public QueueCounters.Snapshot getQueueCounters() {
+        return queueCounters.getSnapshot();
     }
     
     public void shutdown() {
+        mainHandler.removeCallbacks(leaseSweep);
+        mainHandler.removeCallbacks(blockedOperationsTimeout);
         networkMonitor.stopMonitoring();
+        realtimeClient.shutdown();
         stopSync();
-        executorService.shutdown();
+        networkExecutor.shutdown();
+        databaseExecutor.shutdown();
     }
 }
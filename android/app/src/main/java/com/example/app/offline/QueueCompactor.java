@@ -0,0 +1,174 @@
+package com.example.app.offline;
+
+import com.example.app.database.AppDatabase;
+import com.example.app.database.dao.OfflineQueueDao;
+import com.example.app.database.entity.OfflineQueueItem;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coalesces pending queue items that target the same record.
+ *
+ * For each (table, record) the pending operations are folded into at most one:
+ * CREATE + UPDATE becomes a CREATE with the merged payload, UPDATE + UPDATE becomes one
+ * UPDATE with the fields merged in order, CREATE + DELETE cancels out if the CREATE was never
+ * sent, and otherwise (like UPDATE + DELETE) keeps only the DELETE. Stock updates carry absolute values, so their merged payload
+ * keeps the latest quantity and fragrance distribution. A sale with its stock movement acts
+ * as the sale's CREATE: later updates merge into its sale and a delete cancels both parts.
+ */
+public class QueueCompactor {
+    private static final String TAG = "QueueCompactor";
+
+    private final AppDatabase database;
+    private final OfflineQueueDao queueDao;
+    private final QueueCounters queueCounters;
+    private final Gson gson = new Gson();
+
+    public QueueCompactor(AppDatabase database) {
+        this.database = database;
+        this.queueDao = database.offlineQueueDao();
+        this.queueCounters = QueueCounters.getInstance(database);
+    }
+
+    /**
+     * Compact all pending items in one transaction
+     * @return Number of queue rows removed
+     */
+    public int compact() {
+        final int[] removed = {0};
+
+        queueCounters.write(delta -> database.runInTransaction(() -> {
+            List<OfflineQueueItem> items = queueDao.getPendingItemsByRecord();
+            List<OfflineQueueItem> group = new ArrayList<>();
+
+            for (OfflineQueueItem item : items) {
+                if (!group.isEmpty() && !sameRecord(group.get(0), item)) {
+                    removed[0] += compactGroup(group, delta);
+                    group.clear();
+                }
+                group.add(item);
+            }
+            if (!group.isEmpty()) {
+                removed[0] += compactGroup(group, delta);
+            }
+        }));
+
+        SyncLog.d(TAG, "Compaction removed {} queue items", removed[0]);
+        return removed[0];
+    }
+
+    private int compactGroup(List<OfflineQueueItem> group, QueueCounters.Delta delta) {
+        if (group.size() < 2) {
+            return 0;
+        }
+        // Merges can lower a survivor's priority; survivors are counted again below
+        for (OfflineQueueItem item : group) {
+            delta.remove(item);
+        }
+
+        OfflineQueueItem survivor = group.get(0);
+        List<OfflineQueueItem> obsolete = new ArrayList<>();
+        boolean cancelled = false;
+
+        for (int i = 1; i < group.size(); i++) {
+            OfflineQueueItem next = group.get(i);
+
+            if (cancelled) {
+                // A CREATE + DELETE pair was dropped; start again from the next operation
+                survivor = next;
+                cancelled = false;
+                continue;
+            }
+
+            if (OfflineConfig.OP_DELETE.equals(next.operationType)) {
+                obsolete.add(survivor);
+                boolean creates = OfflineConfig.OP_CREATE.equals(survivor.operationType)
+                    || OfflineConfig.OP_SALE_WITH_STOCK.equals(survivor.operationType);
+                if (creates && neverSent(survivor)) {
+                    // The server never saw the record, so neither operation needs to be sent
+                    obsolete.add(next);
+                    cancelled = true;
+                }
+                survivor = next;
+            } else if (OfflineConfig.OP_DELETE.equals(survivor.operationType)
+                    || OfflineConfig.OP_SALE_WITH_STOCK.equals(next.operationType)) {
+                // Operation after a delete (re-create), or a second sale unit; keep both in order
+                survivor = next;
+            } else if (OfflineConfig.OP_SALE_WITH_STOCK.equals(survivor.operationType)) {
+                survivor.setData(mergeIntoSale(survivor.getData(), next.getData()));
+                survivor.priority = Math.min(survivor.priority, next.priority);
+                obsolete.add(next);
+            } else {
+                survivor.setData(mergePayloads(survivor.getData(), next.getData()));
+                survivor.priority = Math.min(survivor.priority, next.priority);
+                obsolete.add(next);
+            }
+        }
+
+        for (OfflineQueueItem item : group) {
+            if (!obsolete.contains(item)) {
+                queueDao.updateItem(item);
+                delta.add(item);
+            }
+        }
+        queueDao.deleteItems(obsolete);
+        return obsolete.size();
+    }
+
+    /**
+     * True if no attempt to send the item was ever recorded. An item that failed, timed out
+     * or came back from the dead-letter store may exist on the server.
+     */
+    private static boolean neverSent(OfflineQueueItem item) {
+        return item.retryCount == 0 && item.attemptHistory == null && item.replayCount == 0;
+    }
+
+    private String mergePayloads(String base, String overlay) {
+        if (base == null || base.isEmpty()) {
+            return overlay;
+        }
+        if (overlay == null || overlay.isEmpty()) {
+            return base;
+        }
+        try {
+            JsonElement baseJson = JsonParser.parseString(base);
+            JsonElement overlayJson = JsonParser.parseString(overlay);
+            if (!baseJson.isJsonObject() || !overlayJson.isJsonObject()) {
+                return overlay;
+            }
+
+            JsonObject merged = baseJson.getAsJsonObject();
+            for (Map.Entry<String, JsonElement> entry : overlayJson.getAsJsonObject().entrySet()) {
+                merged.add(entry.getKey(), entry.getValue());
+            }
+            return gson.toJson(merged);
+        } catch (Exception e) {
+            SyncLog.w(TAG, "Could not merge payloads, keeping the latest", e);
+            return overlay;
+        }
+    }
+
+    private String mergeIntoSale(String compound, String overlay) {
+        try {
+            JsonObject unit = JsonParser.parseString(compound).getAsJsonObject();
+            JsonElement sale = unit.get("sale");
+            unit.add("sale", JsonParser.parseString(
+                mergePayloads(sale != null ? gson.toJson(sale) : null, overlay)));
+            return gson.toJson(unit);
+        } catch (Exception e) {
+            SyncLog.w(TAG, "Could not merge into sale unit, keeping it unchanged", e);
+            return compound;
+        }
+    }
+
+    private boolean sameRecord(OfflineQueueItem a, OfflineQueueItem b) {
+        return a.tableName != null && a.tableName.equals(b.tableName)
+            && a.recordId != null && a.recordId.equals(b.recordId);
+    }
+}
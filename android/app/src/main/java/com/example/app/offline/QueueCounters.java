@@ -0,0 +1,275 @@
+package com.example.app.offline;
+
+import com.example.app.database.AppDatabase;
+import com.example.app.database.entity.OfflineQueueItem;
+import com.example.app.database.entity.QueueCounter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory queue counters per status, table and priority.
+ *
+ * Every queue write runs through {@link #write(Write)}, which records the rows it adds and
+ * removes and applies that delta to the counters right after the write commits, on the same
+ * thread. Readers get an immutable snapshot, so they always see the totals of complete writes
+ * and never take a lock or touch the database.
+ *
+ * The counters are loaded once from the trigger-maintained queue_counters table. The load
+ * excludes writes while it runs, so no write is both in the loaded totals and applied as a delta.
+ */
+public class QueueCounters {
+    private static final String TAG = "QueueCounters";
+    
+    private static volatile QueueCounters INSTANCE;
+    
+    /**
+     * A queue write; it reports every row it adds or removes to the delta
+     */
+    public interface Write {
+        void run(Delta delta);
+    }
+    
+    private final AppDatabase database;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    private final ExecutorService loadExecutor = Executors.newSingleThreadExecutor();
+    // Writes share the read side; the initial load takes the write side
+    private final ReentrantReadWriteLock loadGuard = new ReentrantReadWriteLock();
+    private final ThreadLocal<Delta> currentDelta = new ThreadLocal<>();
+    
+    private QueueCounters(AppDatabase database) {
+        this.database = database;
+        loadExecutor.execute(this::load);
+        loadExecutor.shutdown();
+    }
+    
+    public static QueueCounters getInstance(AppDatabase database) {
+        if (INSTANCE == null) {
+            synchronized (QueueCounters.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new QueueCounters(database);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+    
+    /**
+     * Run a queue write and apply its delta once it has returned. Wrap the whole transaction,
+     * not the statements inside it; a write nested in another joins the outer one, and a write
+     * that throws applies nothing.
+     */
+    public void write(Write write) {
+        Delta outer = currentDelta.get();
+        if (outer != null) {
+            write.run(outer);
+            return;
+        }
+        
+        Delta delta = new Delta();
+        loadGuard.readLock().lock();
+        currentDelta.set(delta);
+        try {
+            write.run(delta);
+            apply(delta);
+        } finally {
+            currentDelta.remove();
+            loadGuard.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Current totals; waits only for the initial load after process start
+     */
+    public Snapshot getSnapshot() {
+        try {
+            loaded.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return snapshot.get();
+    }
+    
+    public int getPendingCount() {
+        return getSnapshot().countByStatus(OfflineConfig.STATUS_PENDING);
+    }
+    
+    /**
+     * Failed items in the queue plus items moved to the dead-letter store
+     */
+    public int getFailedCount() {
+        Snapshot current = getSnapshot();
+        return current.countByStatus(OfflineConfig.STATUS_FAILED) + current.deadLetterCount;
+    }
+    
+    /**
+     * Items that count against MAX_QUEUE_SIZE (pending, processing or failed)
+     */
+    public int getQueueSize() {
+        return getSnapshot().activeCount();
+    }
+    
+    private void apply(Delta delta) {
+        if (delta.isEmpty()) {
+            return;
+        }
+        Snapshot current;
+        do {
+            current = snapshot.get();
+        } while (!snapshot.compareAndSet(current, current.plus(delta)));
+    }
+    
+    private void load() {
+        loadGuard.writeLock().lock();
+        try {
+            snapshot.set(Snapshot.from(database.queueCounterDao().getCounters(),
+                database.deadLetterDao().getCount()));
+        } catch (Exception e) {
+            SyncLog.e(TAG, "Error loading queue counters", e);
+        } finally {
+            loadGuard.writeLock().unlock();
+            loaded.countDown();
+        }
+    }
+    
+    private static String key(String status, String tableName, int priority) {
+        return (status != null ? status : "") + ":" + (tableName != null ? tableName : "") + ":" + priority;
+    }
+    
+    /**
+     * Rows added to and removed from the queue by one write. For an update, remove the row
+     * before changing its status, table or priority and add it back afterwards.
+     */
+    public static class Delta {
+        private final Map<String, Integer> counts = new HashMap<>();
+        private int deadLetters;
+        
+        public void add(OfflineQueueItem item) {
+            change(item, 1);
+        }
+        
+        public void remove(OfflineQueueItem item) {
+            change(item, -1);
+        }
+        
+        /**
+         * An update that changed only the status; item holds the new one
+         */
+        public void changeStatus(OfflineQueueItem item, String previousStatus) {
+            change(key(previousStatus, item.tableName, item.priority), -1);
+            change(key(item.status, item.tableName, item.priority), 1);
+        }
+        
+        public void addDeadLetters(int count) {
+            deadLetters += count;
+        }
+        
+        public void removeDeadLetters(int count) {
+            deadLetters -= count;
+        }
+        
+        boolean isEmpty() {
+            if (deadLetters != 0) {
+                return false;
+            }
+            for (Integer count : counts.values()) {
+                if (count != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private void change(OfflineQueueItem item, int count) {
+            change(key(item.status, item.tableName, item.priority), count);
+        }
+        
+        private void change(String key, int count) {
+            Integer current = counts.get(key);
+            counts.put(key, current != null ? current + count : count);
+        }
+    }
+    
+    /**
+     * Immutable counter totals
+     */
+    public static class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(Collections.<String, Integer>emptyMap(), 0);
+        
+        public final int deadLetterCount;
+        
+        private final Map<String, Integer> counts;
+        private final Map<String, Integer> byStatus = new HashMap<>();
+        private final Map<String, Integer> byStatusAndTable = new HashMap<>();
+        private final Map<String, Integer> byStatusAndPriority = new HashMap<>();
+        
+        private Snapshot(Map<String, Integer> counts, int deadLetterCount) {
+            this.counts = counts;
+            this.deadLetterCount = deadLetterCount;
+            for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                String[] parts = entry.getKey().split(":", -1);
+                add(byStatus, parts[0], entry.getValue());
+                add(byStatusAndTable, parts[0] + ":" + parts[1], entry.getValue());
+                add(byStatusAndPriority, parts[0] + ":" + parts[2], entry.getValue());
+            }
+        }
+        
+        static Snapshot from(List<QueueCounter> counters, int deadLetterCount) {
+            Map<String, Integer> counts = new HashMap<>();
+            for (QueueCounter counter : counters) {
+                add(counts, key(counter.status, counter.tableName, counter.priority), counter.count);
+            }
+            return new Snapshot(counts, deadLetterCount);
+        }
+        
+        Snapshot plus(Delta delta) {
+            Map<String, Integer> next = new HashMap<>(counts);
+            for (Map.Entry<String, Integer> entry : delta.counts.entrySet()) {
+                add(next, entry.getKey(), entry.getValue());
+                if (next.get(entry.getKey()) == 0) {
+                    next.remove(entry.getKey());
+                }
+            }
+            return new Snapshot(next, deadLetterCount + delta.deadLetters);
+        }
+        
+        public int countByStatus(String status) {
+            return get(byStatus, status);
+        }
+        
+        public int countByTable(String status, String tableName) {
+            return get(byStatusAndTable, status + ":" + tableName);
+        }
+        
+        public int countByPriority(String status, int priority) {
+            return get(byStatusAndPriority, status + ":" + priority);
+        }
+        
+        /**
+         * Items still to be sent (pending, processing or failed)
+         */
+        public int activeCount() {
+            return countByStatus(OfflineConfig.STATUS_PENDING)
+                + countByStatus(OfflineConfig.STATUS_PROCESSING)
+                + countByStatus(OfflineConfig.STATUS_FAILED);
+        }
+        
+        private static void add(Map<String, Integer> map, String key, int count) {
+            Integer current = map.get(key);
+            map.put(key, current != null ? current + count : count);
+        }
+        
+        private static int get(Map<String, Integer> map, String key) {
+            Integer value = map.get(key);
+            return value != null ? value : 0;
+        }
+    }
+}
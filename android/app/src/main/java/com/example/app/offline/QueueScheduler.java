@@ -0,0 +1,241 @@
+package com.example.app.offline;
+
+import com.example.app.database.entity.OfflineQueueItem;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Weighted fair scheduler for pending queue items.
+ *
+ * Items are grouped into classes keyed by priority and table. Each class keeps its
+ * FIFO order and is served by stride scheduling: the class with the smallest pass
+ * value goes next and its pass advances by the inverse of its weight. The head of
+ * every class earns aging credit for the time it has been waiting, so low-priority
+ * classes are guaranteed progress behind a large high-priority backlog. Credit is
+ * counted in strides of the heaviest class and capped at SCHEDULER_MAX_AGING_STRIDES,
+ * so a long wait moves a class ahead by a few rounds and cannot turn the order into FIFO.
+ */
+public class QueueScheduler {
+    private static final double STRIDE_UNIT = 1.0;
+
+    private final Map<String, ClassCounters> counters = new HashMap<>();
+    private final long startedAt = System.currentTimeMillis();
+
+    /**
+     * Snapshot of the counters collected for one scheduling class
+     */
+    public static class ClassStats {
+        public final String classKey;
+        public final int weight;
+        public final long dispatched;
+        public final long completed;
+        public final long failed;
+        public final long averageWaitMs;
+        public final long maxWaitMs;
+        public final double throughputPerMinute;
+
+        public ClassStats(String classKey, int weight, long dispatched, long completed, long failed,
+                          long averageWaitMs, long maxWaitMs, double throughputPerMinute) {
+            this.classKey = classKey;
+            this.weight = weight;
+            this.dispatched = dispatched;
+            this.completed = completed;
+            this.failed = failed;
+            this.averageWaitMs = averageWaitMs;
+            this.maxWaitMs = maxWaitMs;
+            this.throughputPerMinute = throughputPerMinute;
+        }
+    }
+
+    private static class ClassCounters {
+        long dispatched;
+        long completed;
+        long failed;
+        long totalWaitMs;
+        long maxWaitMs;
+    }
+
+    private static class ClassQueue {
+        final String key;
+        final int weight;
+        final double stride;
+        final ArrayDeque<OfflineQueueItem> items = new ArrayDeque<>();
+        double pass;
+
+        ClassQueue(String key, int weight) {
+            this.key = key;
+            this.weight = weight;
+            this.stride = STRIDE_UNIT / weight;
+        }
+    }
+
+    /**
+     * Order pending items so that every class receives its weighted share of dispatches.
+     * The input is expected in FIFO order per class (as returned by the queue DAO).
+     */
+    public List<OfflineQueueItem> schedule(List<OfflineQueueItem> pendingItems) {
+        if (pendingItems == null || pendingItems.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<String, ClassQueue> queues = new LinkedHashMap<>();
+        double minStride = STRIDE_UNIT;
+        for (OfflineQueueItem item : pendingItems) {
+            String key = classKey(item.priority, item.tableName);
+            ClassQueue queue = queues.get(key);
+            if (queue == null) {
+                queue = new ClassQueue(key, weightFor(item.priority, item.tableName));
+                queues.put(key, queue);
+                minStride = Math.min(minStride, queue.stride);
+            }
+            queue.items.add(item);
+        }
+
+        long now = System.currentTimeMillis();
+        List<OfflineQueueItem> ordered = new ArrayList<>(pendingItems.size());
+        double virtualTime = 0;
+
+        while (ordered.size() < pendingItems.size()) {
+            ClassQueue next = null;
+            double bestTag = Double.MAX_VALUE;
+
+            for (ClassQueue queue : queues.values()) {
+                if (queue.items.isEmpty()) {
+                    continue;
+                }
+                double tag = queue.pass - agingCredit(queue.items.peekFirst(), now, minStride);
+                if (tag < bestTag) {
+                    bestTag = tag;
+                    next = queue;
+                }
+            }
+
+            OfflineQueueItem item = next.items.pollFirst();
+            ordered.add(item);
+
+            // Idle classes must not bank credit, so a class never falls behind the virtual clock.
+            // The clock follows the winning tag, not its pass, so an aged class jumping ahead
+            // does not push the classes it overtook forward.
+            virtualTime = Math.max(virtualTime, bestTag);
+            double start = Math.max(next.pass, virtualTime);
+            next.pass = start + next.stride;
+        }
+
+        return ordered;
+    }
+
+    /**
+     * Record that an item was handed to the network layer
+     */
+    public synchronized void recordDispatch(OfflineQueueItem item) {
+        ClassCounters classCounters = countersFor(item);
+        classCounters.dispatched++;
+
+        if (item.createdAt != null) {
+            long waitMs = Math.max(0, System.currentTimeMillis() - item.createdAt.getTime());
+            classCounters.totalWaitMs += waitMs;
+            classCounters.maxWaitMs = Math.max(classCounters.maxWaitMs, waitMs);
+        }
+    }
+
+    /**
+     * Record the outcome of a dispatched item
+     */
+    public synchronized void recordOutcome(OfflineQueueItem item, boolean success) {
+        ClassCounters classCounters = countersFor(item);
+        if (success) {
+            classCounters.completed++;
+        } else {
+            classCounters.failed++;
+        }
+    }
+
+    /**
+     * Per-class throughput and wait-time statistics since the scheduler was created
+     */
+    public synchronized Map<String, ClassStats> getStats() {
+        double elapsedMinutes = Math.max(1, System.currentTimeMillis() - startedAt) / 60_000.0;
+        Map<String, ClassStats> stats = new LinkedHashMap<>();
+
+        for (Map.Entry<String, ClassCounters> entry : counters.entrySet()) {
+            ClassCounters c = entry.getValue();
+            String[] parts = entry.getKey().split(":", 2);
+            int weight = weightFor(Integer.parseInt(parts[0]), parts[1]);
+            long averageWait = c.dispatched > 0 ? c.totalWaitMs / c.dispatched : 0;
+
+            stats.put(entry.getKey(), new ClassStats(entry.getKey(), weight, c.dispatched, c.completed,
+                c.failed, averageWait, c.maxWaitMs, c.completed / elapsedMinutes));
+        }
+
+        return stats;
+    }
+
+    public synchronized void resetStats() {
+        counters.clear();
+    }
+
+    private ClassCounters countersFor(OfflineQueueItem item) {
+        String key = classKey(item.priority, item.tableName);
+        ClassCounters classCounters = counters.get(key);
+        if (classCounters == null) {
+            classCounters = new ClassCounters();
+            counters.put(key, classCounters);
+        }
+        return classCounters;
+    }
+
+    /**
+     * @param unit Stride of the heaviest class in this schedule
+     */
+    private double agingCredit(OfflineQueueItem head, long now, double unit) {
+        if (head == null || head.createdAt == null) {
+            return 0;
+        }
+        long waitMs = Math.max(0, now - head.createdAt.getTime());
+        double strides = (double) waitMs / OfflineConfig.SCHEDULER_AGING_INTERVAL;
+        return Math.min(strides, OfflineConfig.SCHEDULER_MAX_AGING_STRIDES) * unit;
+    }
+
+    static String classKey(int priority, String tableName) {
+        return priority + ":" + tableName;
+    }
+
+    static int weightFor(int priority, String tableName) {
+        return priorityWeight(priority) * tableWeight(tableName);
+    }
+
+    private static int priorityWeight(int priority) {
+        switch (priority) {
+            case OfflineConfig.PRIORITY_HIGH:
+                return OfflineConfig.SCHEDULER_WEIGHT_HIGH;
+            case OfflineConfig.PRIORITY_LOW:
+                return OfflineConfig.SCHEDULER_WEIGHT_LOW;
+            default:
+                return OfflineConfig.SCHEDULER_WEIGHT_MEDIUM;
+        }
+    }
+
+    private static int tableWeight(String tableName) {
+        if (tableName == null) {
+            return 1;
+        }
+        switch (tableName) {
+            case OfflineConfig.TABLE_SALES:
+                return OfflineConfig.SCHEDULER_WEIGHT_SALES;
+            case OfflineConfig.TABLE_STOCK:
+                return OfflineConfig.SCHEDULER_WEIGHT_STOCK;
+            case OfflineConfig.TABLE_ORDERS:
+                return OfflineConfig.SCHEDULER_WEIGHT_ORDERS;
+            case OfflineConfig.TABLE_SUPERMARKETS:
+                return OfflineConfig.SCHEDULER_WEIGHT_SUPERMARKETS;
+            default:
+                return 1;
+        }
+    }
+}
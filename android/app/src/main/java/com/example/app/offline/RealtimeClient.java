@@ -0,0 +1,505 @@
+package com.example.app.offline;
+
+import android.content.Context;
+
+import com.example.app.database.AppDatabase;
+import com.example.app.database.converter.EntityTypeAdapters;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+/**
+ * Push-based remote changes over Supabase Realtime (Phoenix channels).
+ *
+ * One channel subscribes to postgres_changes on sales, orders, payments and stock_history, and
+ * each event is written to Room as it arrives. Payments have no local table, so a payment event
+ * refreshes the sale it belongs to. While the socket is down the client reconnects with
+ * exponential backoff and pulls deltas on a timer; every successful join starts with one delta
+ * pull to cover the gap. Rows with queued local changes are left alone, as in the snapshot load.
+ */
+public class RealtimeClient {
+    private static final String TAG = "RealtimeClient";
+    private static final String PROTOCOL_VERSION = "1.0.0";
+    private static final String CHANNEL_TOPIC = "realtime:offline-sync";
+    private static final String PHOENIX_TOPIC = "phoenix";
+
+    static final String TABLE_PAYMENTS = "payments";
+    static final String TABLE_STOCK_HISTORY = "stock_history";
+    private static final String[] SUBSCRIBED_TABLES = {
+        OfflineConfig.TABLE_SALES,
+        OfflineConfig.TABLE_ORDERS,
+        TABLE_PAYMENTS,
+        TABLE_STOCK_HISTORY
+    };
+
+    public enum State {
+        STOPPED, CONNECTING, JOINED, WAITING_TO_RECONNECT
+    }
+
+    /**
+     * Called on a background thread
+     */
+    public interface Listener {
+        void onStateChanged(State state);
+        void onRemoteChange(String tableName, String changeType, String recordId);
+    }
+
+    /**
+     * Local side of the sync: Room plus the delta pull. Called on the apply thread.
+     */
+    interface LocalStore {
+        boolean hasPendingLocalEdit(String table, String id);
+        void writeSynced(Object row);
+        void deleteSynced(String table, String id);
+        long pullChanges() throws IOException;
+    }
+
+    private final LocalStore store;
+    private final SupabaseApiClient apiClient;
+    private final String socketUrl;
+    private final String apiKey;
+    private final long heartbeatInterval;
+    private final OkHttpClient httpClient;
+    private final RetryStrategy reconnectStrategy;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService applyExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicInteger refCounter = new AtomicInteger();
+
+    // Guarded by this
+    private boolean running;
+    private WebSocket socket;
+    private String joinRef;
+    private String pendingHeartbeatRef;
+    private int reconnectAttempt;
+    private ScheduledFuture<?> heartbeatTask;
+    private ScheduledFuture<?> reconnectTask;
+    private ScheduledFuture<?> fallbackPullTask;
+
+    private volatile State state = State.STOPPED;
+    private volatile Listener listener;
+
+    public RealtimeClient(Context context, SnapshotBootstrapper bootstrapper) {
+        this(AppDatabase.getInstance(context), SupabaseApiClient.getInstance(context), bootstrapper,
+             SupabaseApiClient.DEFAULT_REALTIME_URL, SupabaseApiClient.DEFAULT_API_KEY);
+    }
+
+    /**
+     * @param socketUrl Realtime websocket endpoint, e.g. a local stand-in at ws://10.0.2.2:4000/socket
+     */
+    public RealtimeClient(AppDatabase database, SupabaseApiClient apiClient, SnapshotBootstrapper bootstrapper,
+                          String socketUrl, String apiKey) {
+        this(roomStore(database, bootstrapper), apiClient, socketUrl, apiKey,
+             OfflineConfig.REALTIME_HEARTBEAT_INTERVAL,
+             new RetryStrategy(Integer.MAX_VALUE,
+                     OfflineConfig.REALTIME_RECONNECT_INITIAL_DELAY,
+                     OfflineConfig.RETRY_BACKOFF_MULTIPLIER,
+                     OfflineConfig.REALTIME_RECONNECT_MAX_DELAY,
+                     true));
+    }
+
+    RealtimeClient(LocalStore store, SupabaseApiClient apiClient, String socketUrl, String apiKey,
+                   long heartbeatInterval, RetryStrategy reconnectStrategy) {
+        this.store = store;
+        this.apiClient = apiClient;
+        this.socketUrl = socketUrl;
+        this.apiKey = apiKey;
+        this.heartbeatInterval = heartbeatInterval;
+        this.httpClient = new OkHttpClient.Builder()
+                .connectTimeout(OfflineConfig.NETWORK_TIMEOUT, TimeUnit.MILLISECONDS)
+                .readTimeout(0, TimeUnit.MILLISECONDS)  // Liveness comes from the heartbeat
+                .build();
+        this.reconnectStrategy = reconnectStrategy;
+    }
+
+    private static LocalStore roomStore(AppDatabase database, SnapshotBootstrapper bootstrapper) {
+        return new LocalStore() {
+            @Override
+            public boolean hasPendingLocalEdit(String table, String id) {
+                return SnapshotBootstrapper.hasPendingLocalEdit(database, table, id);
+            }
+
+            @Override
+            public void writeSynced(Object row) {
+                SnapshotBootstrapper.writeSynced(database, row);
+            }
+
+            @Override
+            public void deleteSynced(String table, String id) {
+                SnapshotBootstrapper.deleteSynced(database, table, id);
+            }
+
+            @Override
+            public long pullChanges() throws IOException {
+                return bootstrapper.pullChanges(null);
+            }
+        };
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        reconnectAttempt = 0;
+        connect();
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        cancelTask(heartbeatTask);
+        cancelTask(reconnectTask);
+        cancelTask(fallbackPullTask);
+        heartbeatTask = reconnectTask = fallbackPullTask = null;
+        if (socket != null) {
+            socket.close(1000, "Stopped");
+            socket = null;
+        }
+        setState(State.STOPPED);
+    }
+
+    /**
+     * Skip the remaining backoff, e.g. when the network comes back
+     */
+    public synchronized void reconnectNow() {
+        if (!running || socket != null) {
+            return;
+        }
+        cancelTask(reconnectTask);
+        reconnectTask = null;
+        reconnectAttempt = 0;
+        connect();
+    }
+
+    /**
+     * Stop for good and release the worker threads
+     */
+    public void shutdown() {
+        stop();
+        scheduler.shutdown();
+        applyExecutor.shutdown();
+    }
+
+    private void connect() {
+        setState(State.CONNECTING);
+        joinRef = null;
+        pendingHeartbeatRef = null;
+        Request request = new Request.Builder()
+                .url(socketUrl + "?apikey=" + apiKey + "&vsn=" + PROTOCOL_VERSION)
+                .build();
+        socket = httpClient.newWebSocket(request, new SocketListener());
+    }
+
+    private synchronized void onOpen(WebSocket webSocket) {
+        if (webSocket != socket) {
+            return;
+        }
+        JsonObject config = new JsonObject();
+        JsonArray changes = new JsonArray();
+        for (String table : SUBSCRIBED_TABLES) {
+            JsonObject filter = new JsonObject();
+            filter.addProperty("event", "*");
+            filter.addProperty("schema", "public");
+            filter.addProperty("table", table);
+            changes.add(filter);
+        }
+        config.add("postgres_changes", changes);
+
+        JsonObject payload = new JsonObject();
+        payload.add("config", config);
+        payload.addProperty("access_token", apiKey);
+
+        joinRef = nextRef();
+        send(CHANNEL_TOPIC, "phx_join", payload, joinRef);
+
+        heartbeatTask = scheduler.scheduleAtFixedRate(this::heartbeat,
+                heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void heartbeat() {
+        if (socket == null) {
+            return;
+        }
+        if (pendingHeartbeatRef != null) {
+            // The last heartbeat was never answered; the connection is dead even if TCP says otherwise
+            WebSocket stale = socket;
+            onDisconnected(stale, "Heartbeat timeout");
+            stale.cancel();
+            return;
+        }
+        pendingHeartbeatRef = nextRef();
+        send(PHOENIX_TOPIC, "heartbeat", new JsonObject(), pendingHeartbeatRef);
+    }
+
+    private synchronized void onDisconnected(WebSocket webSocket, String reason) {
+        if (webSocket != socket) {
+            return;
+        }
+        socket = null;
+        cancelTask(heartbeatTask);
+        heartbeatTask = null;
+        if (!running) {
+            return;
+        }
+
+        long delay = reconnectStrategy.calculateDelay(reconnectAttempt++);
+        SyncLog.w(TAG, "Realtime disconnected ({}), reconnecting in {}ms", reason, delay);
+        setState(State.WAITING_TO_RECONNECT);
+        reconnectTask = scheduler.schedule(() -> {
+            synchronized (RealtimeClient.this) {
+                reconnectTask = null;
+                if (running && socket == null) {
+                    connect();
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+
+        if (fallbackPullTask == null) {
+            fallbackPullTask = scheduler.scheduleWithFixedDelay(() -> applyExecutor.execute(this::pullChanges),
+                    OfflineConfig.REALTIME_FALLBACK_PULL_INTERVAL, OfflineConfig.REALTIME_FALLBACK_PULL_INTERVAL,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void onJoined(WebSocket webSocket) {
+        if (webSocket != socket) {
+            return;
+        }
+        reconnectAttempt = 0;
+        cancelTask(fallbackPullTask);
+        fallbackPullTask = null;
+        setState(State.JOINED);
+        // Changes made while the socket was down are not replayed by the server
+        applyExecutor.execute(this::pullChanges);
+    }
+
+    private void handleMessage(WebSocket webSocket, String text) {
+        JsonObject message;
+        try {
+            message = JsonParser.parseString(text).getAsJsonObject();
+        } catch (Exception e) {
+            SyncLog.w(TAG, "Ignoring malformed realtime message: {}", text);
+            return;
+        }
+        String topic = stringOf(message, "topic");
+        String event = stringOf(message, "event");
+        String ref = stringOf(message, "ref");
+        JsonObject payload = message.has("payload") && message.get("payload").isJsonObject()
+            ? message.getAsJsonObject("payload")
+            : new JsonObject();
+
+        if ("phx_reply".equals(event)) {
+            boolean ok = "ok".equals(stringOf(payload, "status"));
+            synchronized (this) {
+                if (ref != null && ref.equals(pendingHeartbeatRef)) {
+                    pendingHeartbeatRef = null;
+                    return;
+                }
+                if (ref == null || !ref.equals(joinRef)) {
+                    return;
+                }
+            }
+            if (ok) {
+                onJoined(webSocket);
+            } else {
+                SyncLog.e(TAG, "Realtime join rejected: {}", payload);
+                onDisconnected(webSocket, "Join rejected");
+                webSocket.close(1000, "Join rejected");
+            }
+            return;
+        }
+
+        if (!CHANNEL_TOPIC.equals(topic) || event == null) {
+            return;
+        }
+        switch (event) {
+            case "postgres_changes":
+                if (payload.has("data") && payload.get("data").isJsonObject()) {
+                    JsonObject data = payload.getAsJsonObject("data");
+                    applyExecutor.execute(() -> applyChange(data));
+                }
+                break;
+            case "phx_error":
+            case "phx_close":
+                onDisconnected(webSocket, event);
+                webSocket.close(1000, event);
+                break;
+            case "system":
+                if ("error".equals(stringOf(payload, "status"))) {
+                    SyncLog.w(TAG, "Realtime system error: {}", stringOf(payload, "message"));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void applyChange(JsonObject data) {
+        String table = stringOf(data, "table");
+        String type = stringOf(data, "type");
+        boolean deleted = "DELETE".equals(type);
+        JsonObject record = objectOf(data, deleted ? "old_record" : "record");
+        if (table == null || record == null) {
+            return;
+        }
+
+        try {
+            if (TABLE_PAYMENTS.equals(table)) {
+                String saleId = stringOf(record, "sale_id");
+                if (saleId != null) {
+                    refreshSale(saleId);
+                }
+                notifyChange(table, type, stringOf(record, "id"));
+                return;
+            }
+
+            String localTable = TABLE_STOCK_HISTORY.equals(table) ? OfflineConfig.TABLE_STOCK : table;
+            String id = stringOf(record, "id");
+            if (id == null || store.hasPendingLocalEdit(localTable, id)) {
+                return;
+            }
+
+            if (deleted) {
+                store.deleteSynced(localTable, id);
+            } else {
+                Object row = SnapshotBootstrapper.adapterFor(localTable).fromJsonTree(record);
+                if (row != null) {
+                    store.writeSynced(row);
+                }
+            }
+            if (SyncLog.DEBUG) {
+                SyncLog.d(TAG, "Applied remote {} on {}:{}", type, table, id);
+            }
+            notifyChange(table, type, id);
+        } catch (Exception e) {
+            SyncLog.e(TAG, "Error applying remote change on {}", table, e);
+        }
+    }
+
+    private void refreshSale(String saleId) {
+        SupabaseApiClient.ApiResponse response = apiClient.fetchRecords(OfflineConfig.TABLE_SALES, "id=eq." + saleId);
+        if (!response.success || response.data == null || store.hasPendingLocalEdit(OfflineConfig.TABLE_SALES, saleId)) {
+            return;
+        }
+        JsonElement rows = JsonParser.parseString(response.data);
+        if (!rows.isJsonArray()) {
+            return;
+        }
+        for (JsonElement element : rows.getAsJsonArray()) {
+            Object sale = EntityTypeAdapters.SALE.fromJsonTree(element);
+            if (sale != null) {
+                store.writeSynced(sale);
+            }
+        }
+    }
+
+    private void pullChanges() {
+        try {
+            long applied = store.pullChanges();
+            SyncLog.d(TAG, "Delta pull applied {} rows", applied);
+        } catch (IOException e) {
+            SyncLog.w(TAG, "Delta pull failed", e);
+        } catch (Exception e) {
+            SyncLog.e(TAG, "Error during delta pull", e);
+        }
+    }
+
+    private void send(String topic, String event, JsonObject payload, String ref) {
+        JsonObject message = new JsonObject();
+        message.addProperty("topic", topic);
+        message.addProperty("event", event);
+        message.add("payload", payload);
+        message.addProperty("ref", ref);
+        socket.send(message.toString());
+    }
+
+    private String nextRef() {
+        return Integer.toString(refCounter.incrementAndGet());
+    }
+
+    private void setState(State newState) {
+        if (state == newState) {
+            return;
+        }
+        state = newState;
+        Listener current = listener;
+        if (current != null) {
+            current.onStateChanged(newState);
+        }
+    }
+
+    private void notifyChange(String table, String type, String id) {
+        Listener current = listener;
+        if (current != null) {
+            current.onRemoteChange(table, type, id);
+        }
+    }
+
+    private static void cancelTask(ScheduledFuture<?> task) {
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    private static String stringOf(JsonObject object, String field) {
+        JsonElement value = object.get(field);
+        return value != null && value.isJsonPrimitive() ? value.getAsString() : null;
+    }
+
+    private static JsonObject objectOf(JsonObject object, String field) {
+        JsonElement value = object.get(field);
+        return value != null && value.isJsonObject() ? value.getAsJsonObject() : null;
+    }
+
+    private class SocketListener extends WebSocketListener {
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            RealtimeClient.this.onOpen(webSocket);
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            handleMessage(webSocket, text);
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(1000, null);
+        }
+
+        @Override
+        public void onClosed(WebSocket webSocket, int code, String reason) {
+            onDisconnected(webSocket, "Closed " + code);
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+            onDisconnected(webSocket, t.getMessage());
+        }
+    }
+}
@@ -1,7 +1,5 @@
 package com.example.app.offline;
 
-import android.util.Log;
-
 import java.util.Random;
 
 /**
@@ -58,7 +56,9 @@ public class RetryStrategy {
         }
         
         long finalDelay = Math.max(0, (long) delay);
-        Log.d(TAG, "Calculated delay for attempt " + attempt + ": " + finalDelay + "ms");
+        if (SyncLog.DEBUG) {
+            SyncLog.d(TAG, "Calculated delay for attempt {}: {}ms", attempt, finalDelay);
+        }
         
         return finalDelay;
     }
@@ -68,7 +68,9 @@ public class RetryStrategy {
      */
     public boolean shouldRetry(int attempt, Exception error, int httpStatusCode) {
         if (attempt >= maxRetries) {
-            Log.d(TAG, "Max retries exceeded (" + maxRetries + ")");
+            if (SyncLog.DEBUG) {
+                SyncLog.d(TAG, "Max retries exceeded ({})", maxRetries);
+            }
             return false;
         }
         
@@ -78,17 +80,23 @@ public class RetryStrategy {
                 case 408: // Request Timeout
                 case 429: // Too Many Requests
                 case 409: // Conflict - might resolve after retry
-                    Log.d(TAG, "Retryable client error: " + httpStatusCode);
+                    if (SyncLog.DEBUG) {
+                        SyncLog.d(TAG, "Retryable client error: {}", httpStatusCode);
+                    }
                     return true;
                 default:
-                    Log.d(TAG, "Non-retryable client error: " + httpStatusCode);
+                    if (SyncLog.DEBUG) {
+                        SyncLog.d(TAG, "Non-retryable client error: {}", httpStatusCode);
+                    }
                     return false;
             }
         }
         
         // Retry on server errors (5xx) and network errors
         if (httpStatusCode >= 500 || httpStatusCode == -1) {
-            Log.d(TAG, "Retryable server/network error: " + httpStatusCode);
+            if (SyncLog.DEBUG) {
+                SyncLog.d(TAG, "Retryable server/network error: {}", httpStatusCode);
+            }
             return true;
         }
         
@@ -103,7 +111,7 @@ public class RetryStrategy {
                     errorMessage.contains("connection") ||
                     errorMessage.contains("network") ||
                     errorMessage.contains("unreachable")) {
-                    Log.d(TAG, "Retryable network error: " + errorMessage);
+                    SyncLog.d(TAG, "Retryable network error: {}", errorMessage);
                     return true;
                 }
                 
@@ -111,13 +119,13 @@ public class RetryStrategy {
                 if (errorMessage.contains("database") ||
                     errorMessage.contains("constraint") ||
                     errorMessage.contains("lock")) {
-                    Log.d(TAG, "Retryable database error: " + errorMessage);
+                    SyncLog.d(TAG, "Retryable database error: {}", errorMessage);
                     return true;
                 }
             }
         }
         
-        Log.d(TAG, "Non-retryable error");
+        SyncLog.d(TAG, "Non-retryable error");
         return false;
     }
     
@@ -0,0 +1,460 @@
+package com.example.app.offline;
+
+import android.content.Context;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.example.app.database.AppDatabase;
+import com.example.app.database.DeferredIndexes;
+import com.example.app.database.EntityCache;
+import com.example.app.database.converter.EntityTypeAdapters;
+import com.example.app.database.entity.Order;
+import com.example.app.database.entity.Sale;
+import com.example.app.database.entity.Stock;
+import com.example.app.database.entity.Supermarket;
+import com.example.app.database.entity.SyncWatermark;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.Response;
+
+/**
+ * Fills an empty local store from one streamed snapshot per table, then keeps it current by
+ * pulling only the rows changed since each table's watermark.
+ *
+ * The snapshot body is parsed row by row with the streaming entity adapters and written in
+ * transactions of SNAPSHOT_CHUNK_SIZE rows. Secondary indices are dropped for the load and
+ * built once at the end. Rows deleted on the server are found through the deleted_rows
+ * tombstones its delete triggers write.
+ *
+ * One instance is shared by the sync manager, the realtime client and the repositories.
+ * Loads of the same table are serialized, so concurrent refreshes never read the same
+ * watermark and write the same rows twice; different tables still load in parallel.
+ */
+public class SnapshotBootstrapper {
+    private static final String TAG = "SnapshotBootstrapper";
+    private static final String TOMBSTONE_TABLE = "deleted_rows";
+    
+    private static final String[] TABLES = {
+        OfflineConfig.TABLE_SUPERMARKETS,
+        OfflineConfig.TABLE_SALES,
+        OfflineConfig.TABLE_ORDERS,
+        OfflineConfig.TABLE_STOCK
+    };
+    
+    private static volatile SnapshotBootstrapper INSTANCE;
+    
+    private final AppDatabase database;
+    private final SupabaseApiClient apiClient;
+    private final Map<String, Object> tableLocks = new HashMap<>();
+    
+    public interface ProgressListener {
+        void onTableStarted(String tableName, long expectedRows);
+        void onProgress(String tableName, long rowsLoaded, long expectedRows);
+        void onTableCompleted(String tableName, long rowsLoaded);
+    }
+    
+    private SnapshotBootstrapper(Context context) {
+        this.database = AppDatabase.getInstance(context);
+        this.apiClient = SupabaseApiClient.getInstance(context);
+        for (String table : TABLES) {
+            tableLocks.put(table, new Object());
+        }
+    }
+    
+    public static SnapshotBootstrapper getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (SnapshotBootstrapper.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new SnapshotBootstrapper(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+    
+    /**
+     * True once every table has been loaded from a snapshot
+     */
+    public boolean isBootstrapped() {
+        for (String table : TABLES) {
+            SyncWatermark watermark = database.syncWatermarkDao().getWatermark(table);
+            if (watermark == null || watermark.bootstrappedAt == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Download and ingest every table that has not been bootstrapped yet. Blocking.
+     */
+    public void bootstrap(ProgressListener listener) throws IOException {
+        long startTime = System.currentTimeMillis();
+        
+        for (String table : TABLES) {
+            synchronized (lockFor(table)) {
+                SyncWatermark existing = database.syncWatermarkDao().getWatermark(table);
+                if (existing != null && existing.bootstrappedAt != null) {
+                    continue;
+                }
+                loadTable(table, null, true, listener);
+            }
+        }
+        
+        SyncLog.d(TAG, "Bootstrap finished in {}ms", System.currentTimeMillis() - startTime);
+    }
+    
+    /**
+     * Incremental sync after the bootstrap: fetch rows changed since each table's watermark.
+     * Blocking.
+     * @return Number of rows applied
+     */
+    public long pullChanges(ProgressListener listener) throws IOException {
+        long applied = 0;
+        for (String table : TABLES) {
+            SyncWatermark watermark = database.syncWatermarkDao().getWatermark(table);
+            if (watermark == null || watermark.bootstrappedAt == null) {
+                continue;
+            }
+            applied += refreshTable(table, listener);
+        }
+        return applied;
+    }
+    
+    /**
+     * Bring one table up to date: the full snapshot if it was never loaded, otherwise only
+     * the rows changed or deleted since its watermark. The watermark is re-read with a small
+     * overlap because updated_at is stamped at transaction start, so a slow transaction can
+     * commit a row older than one already pulled. Blocking.
+     * @return Number of rows written
+     */
+    public long refreshTable(String table, ProgressListener listener) throws IOException {
+        synchronized (lockFor(table)) {
+            SyncWatermark watermark = database.syncWatermarkDao().getWatermark(table);
+            if (watermark == null || watermark.bootstrappedAt == null) {
+                return loadTable(table, null, true, listener);
+            }
+            String since = watermark.watermark != null
+                ? EntityTypeAdapters.formatDate(new Date(watermark.watermark - OfflineConfig.SNAPSHOT_WATERMARK_OVERLAP))
+                : null;
+            return loadTable(table, since, false, listener);
+        }
+    }
+    
+    private Object lockFor(String table) {
+        Object lock = tableLocks.get(table);
+        if (lock == null) {
+            throw new IllegalArgumentException("Unsupported table: " + table);
+        }
+        return lock;
+    }
+    
+    private long loadTable(String table, String sinceIso, boolean bulk, ProgressListener listener) throws IOException {
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        Long deletedWatermark = sinceIso != null ? applyTombstones(table, sinceIso) : null;
+        
+        try (Response response = apiClient.openTableStream(remoteTableOf(table), sinceIso);
+             JsonReader reader = new JsonReader(response.body().charStream())) {
+            long expectedRows = parseTotalCount(response.header("Content-Range"));
+            if (listener != null) {
+                listener.onTableStarted(table, expectedRows);
+            }
+            
+            String indexSql = null;
+            if (bulk) {
+                indexSql = DeferredIndexes.drop(db, childTablesOf(table));
+                saveState(table, null, 0, null, indexSql);
+            }
+            
+            TableLoader loader = new TableLoader(table, !bulk);
+            reader.beginArray();
+            while (reader.hasNext()) {
+                loader.read(reader);
+                if (loader.buffered() >= OfflineConfig.SNAPSHOT_CHUNK_SIZE) {
+                    loader.flush();
+                    if (listener != null) {
+                        listener.onProgress(table, loader.rowsLoaded, expectedRows);
+                    }
+                }
+            }
+            reader.endArray();
+            loader.flush();
+            
+            if (bulk) {
+                DeferredIndexes.restore(db, indexSql);
+                saveState(table, loader.watermark, loader.rowsLoaded, new Date(), null);
+            } else {
+                Long watermark = loader.watermark;
+                if (deletedWatermark != null && (watermark == null || deletedWatermark > watermark)) {
+                    watermark = deletedWatermark;
+                }
+                if (watermark != null) {
+                    database.syncWatermarkDao().advanceWatermark(table, watermark, loader.rowsLoaded);
+                }
+            }
+            
+            if (listener != null) {
+                listener.onTableCompleted(table, loader.rowsLoaded);
+            }
+            SyncLog.d(TAG, "Loaded {} rows into {}", loader.rowsLoaded, table);
+            return loader.rowsLoaded;
+        }
+    }
+    
+    /**
+     * Delete the local copies of rows removed on the server since the watermark. Rows with a
+     * queued local edit are kept; that edit decides their fate when it syncs.
+     * @return Latest deletion time seen, or null if nothing was deleted
+     */
+    private Long applyTombstones(String table, String sinceIso) throws IOException {
+        SupabaseApiClient.ApiResponse response = apiClient.fetchRecords(TOMBSTONE_TABLE,
+            "select=row_id,deleted_at&table_name=eq." + remoteTableOf(table)
+                + "&deleted_at=gte." + sinceIso + "&order=deleted_at.asc");
+        if (response.cancelled) {
+            throw new IOException("Cancelled while fetching deletions for " + table);
+        }
+        if (!response.success || response.data == null) {
+            throw new IOException("Failed to fetch deletions for " + table + " (" + response.statusCode + "): "
+                + response.error);
+        }
+        
+        JsonElement rows = JsonParser.parseString(response.data);
+        if (!rows.isJsonArray() || rows.getAsJsonArray().size() == 0) {
+            return null;
+        }
+        
+        final long[] latest = {Long.MIN_VALUE};
+        final int[] deleted = {0};
+        database.runInTransaction(() -> {
+            for (JsonElement element : rows.getAsJsonArray()) {
+                JsonObject tombstone = element.getAsJsonObject();
+                String id = tombstone.get("row_id").getAsString();
+                Date deletedAt = EntityTypeAdapters.parseDate(tombstone.get("deleted_at").getAsString());
+                if (deletedAt != null && deletedAt.getTime() > latest[0]) {
+                    latest[0] = deletedAt.getTime();
+                }
+                if (!hasPendingLocalEdit(database, table, id)) {
+                    deleteSynced(database, table, id);
+                    deleted[0]++;
+                }
+            }
+        });
+        SyncLog.d(TAG, "Applied {} deletions to {}", deleted[0], table);
+        return latest[0] != Long.MIN_VALUE ? latest[0] : null;
+    }
+    
+    private void saveState(String table, Long watermark, long rowCount, Date bootstrappedAt, String pendingIndexSql) {
+        SyncWatermark state = new SyncWatermark();
+        state.tableName = table;
+        state.watermark = watermark;
+        state.rowCount = rowCount;
+        state.bootstrappedAt = bootstrappedAt;
+        state.pendingIndexSql = pendingIndexSql;
+        database.syncWatermarkDao().upsertWatermark(state);
+    }
+    
+    private static String[] childTablesOf(String table) {
+        switch (table) {
+            case OfflineConfig.TABLE_SALES:
+                return new String[] {table, "sale_fragrances"};
+            case OfflineConfig.TABLE_STOCK:
+                return new String[] {table, "stock_fragrances"};
+            default:
+                return new String[] {table};
+        }
+    }
+    
+    /**
+     * PostgREST reports the total as "0-499/1234"; -1 when unknown
+     */
+    static long parseTotalCount(String contentRange) {
+        if (contentRange == null) {
+            return -1;
+        }
+        int slash = contentRange.lastIndexOf('/');
+        if (slash < 0 || slash == contentRange.length() - 1 || contentRange.charAt(slash + 1) == '*') {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * Buffers parsed rows for one table and writes them a chunk per transaction
+     */
+    private class TableLoader {
+        private final String table;
+        private final boolean skipPendingLocalEdits;
+        private final List<Object> buffer = new ArrayList<>(OfflineConfig.SNAPSHOT_CHUNK_SIZE);
+        
+        long rowsLoaded = 0;
+        Long watermark = null;
+        
+        TableLoader(String table, boolean skipPendingLocalEdits) {
+            this.table = table;
+            this.skipPendingLocalEdits = skipPendingLocalEdits;
+        }
+        
+        int buffered() {
+            return buffer.size();
+        }
+        
+        void read(JsonReader reader) throws IOException {
+            Object row = adapterFor(table).read(reader);
+            if (row == null) {
+                return;
+            }
+            Date updatedAt = updatedAtOf(row);
+            if (updatedAt != null && (watermark == null || updatedAt.getTime() > watermark)) {
+                watermark = updatedAt.getTime();
+            }
+            buffer.add(row);
+        }
+        
+        void flush() {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            final int[] written = {0};
+            database.runInTransaction(() -> {
+                for (Object row : buffer) {
+                    if (skipPendingLocalEdits && hasPendingLocalEdit(row)) {
+                        // The queued local change wins; the server copy arrives after it syncs
+                        continue;
+                    }
+                    write(row);
+                    written[0]++;
+                }
+            });
+            rowsLoaded += written[0];
+            buffer.clear();
+        }
+        
+        private boolean hasPendingLocalEdit(Object row) {
+            String id = idOf(row);
+            return id != null && SnapshotBootstrapper.hasPendingLocalEdit(database, table, id);
+        }
+        
+        private void write(Object row) {
+            writeSynced(database, row);
+        }
+    }
+    
+    /**
+     * Upsert a row received from the server and mark it synced. The DAO wrappers evict the
+     * cached copy; orders have no wrapper and are evicted here.
+     */
+    static void writeSynced(AppDatabase database, Object row) {
+        if (row instanceof Sale) {
+            Sale sale = (Sale) row;
+            sale.syncStatus = "synced";
+            database.saleDao().insertSale(sale);
+        } else if (row instanceof Order) {
+            Order order = (Order) row;
+            order.syncStatus = "synced";
+            database.orderDao().insertOrder(order);
+            EntityCache.evict(OfflineConfig.TABLE_ORDERS, order.id);
+        } else if (row instanceof Stock) {
+            Stock stock = (Stock) row;
+            stock.syncStatus = "synced";
+            database.stockDao().insertStock(stock);
+        } else if (row instanceof Supermarket) {
+            Supermarket supermarket = (Supermarket) row;
+            supermarket.syncStatus = "synced";
+            database.supermarketDao().insertSupermarket(supermarket);
+        }
+    }
+    
+    /**
+     * Remove a row the server deleted
+     */
+    static void deleteSynced(AppDatabase database, String table, String id) {
+        switch (table) {
+            case OfflineConfig.TABLE_SALES:
+                database.saleDao().deleteSaleById(id);
+                break;
+            case OfflineConfig.TABLE_ORDERS:
+                database.orderDao().deleteOrderById(id);
+                break;
+            case OfflineConfig.TABLE_STOCK:
+                database.stockDao().deleteStockById(id);
+                break;
+            case OfflineConfig.TABLE_SUPERMARKETS:
+                database.supermarketDao().deleteSupermarketById(id);
+                break;
+            default:
+                break;
+        }
+        EntityCache.evict(table, id);
+    }
+    
+    /**
+     * True while a local change to the record is queued or in flight. Completed items are
+     * kept around for a few days and must not hold back fresh server copies.
+     */
+    static boolean hasPendingLocalEdit(AppDatabase database, String table, String id) {
+        return database.offlineQueueDao().getUnsentCountForRecord(table, id) > 0;
+    }
+    
+    /**
+     * Server table backing a local table; stock movements live in stock_history
+     */
+    static String remoteTableOf(String table) {
+        return OfflineConfig.TABLE_STOCK.equals(table) ? "stock_history" : table;
+    }
+    
+    static TypeAdapter<?> adapterFor(String table) {
+        switch (table) {
+            case OfflineConfig.TABLE_SALES:
+                return EntityTypeAdapters.SALE;
+            case OfflineConfig.TABLE_ORDERS:
+                return EntityTypeAdapters.ORDER;
+            case OfflineConfig.TABLE_STOCK:
+                return EntityTypeAdapters.STOCK;
+            case OfflineConfig.TABLE_SUPERMARKETS:
+                return EntityTypeAdapters.SUPERMARKET;
+            default:
+                throw new IllegalArgumentException("Unsupported table: " + table);
+        }
+    }
+    
+    private static Date updatedAtOf(Object row) {
+        if (row instanceof Sale) {
+            return ((Sale) row).updatedAt;
+        } else if (row instanceof Order) {
+            return ((Order) row).updatedAt;
+        } else if (row instanceof Stock) {
+            return ((Stock) row).updatedAt;
+        } else if (row instanceof Supermarket) {
+            return ((Supermarket) row).updatedAt;
+        }
+        return null;
+    }
+    
+    static String idOf(Object row) {
+        if (row instanceof Sale) {
+            return ((Sale) row).id;
+        } else if (row instanceof Order) {
+            return ((Order) row).id;
+        } else if (row instanceof Stock) {
+            return ((Stock) row).id;
+        } else if (row instanceof Supermarket) {
+            return ((Supermarket) row).id;
+        }
+        return null;
+    }
+}
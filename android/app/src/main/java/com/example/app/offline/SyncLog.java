@@ -0,0 +1,290 @@
+package com.example.app.offline;
+
+import android.util.Log;
+
+import com.example.app.BuildConfig;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logging facade for the sync hot path.
+ *
+ * Debug and verbose calls compile to nothing useful in release builds: {@link #DEBUG} is a
+ * compile-time constant, so {@code if (SyncLog.DEBUG)} guards are removed by the compiler.
+ * At runtime the minimum level can be raised further with {@link #setLevel(int)}. Messages
+ * use {@code {}} placeholders and fixed-arity overloads, so a disabled call allocates no
+ * string and no varargs array; only the formatting of enabled messages does. Primitive
+ * arguments are still boxed at the call site, so per-item calls sit behind {@link #DEBUG}.
+ */
+public final class SyncLog {
+    /** False in release builds; guarded blocks are stripped at compile time */
+    public static final boolean DEBUG = BuildConfig.DEBUG;
+
+    /** Longest rendering of a single argument, so response bodies cannot flood logcat */
+    static final int MAX_ARG_LENGTH = 256;
+
+    private static volatile int level = DEBUG ? Log.DEBUG : Log.INFO;
+
+    private SyncLog() {
+        // Prevent instantiation
+    }
+
+    /**
+     * @param minLevel One of the {@link Log} priorities; debug levels stay off in release builds
+     */
+    public static void setLevel(int minLevel) {
+        level = minLevel;
+    }
+
+    public static int getLevel() {
+        return level;
+    }
+
+    public static boolean isDebugEnabled() {
+        return DEBUG && level <= Log.DEBUG;
+    }
+
+    public static boolean isEnabled(int priority) {
+        return priority >= level && (priority > Log.DEBUG || DEBUG);
+    }
+
+    // Debug
+
+    public static void d(String tag, String message) {
+        if (isDebugEnabled()) {
+            Log.d(tag, message);
+        }
+    }
+
+    public static void d(String tag, String format, Object arg1) {
+        if (isDebugEnabled()) {
+            Log.d(tag, format(format, arg1, null, null, null, null, 1));
+        }
+    }
+
+    public static void d(String tag, String format, Object arg1, Object arg2) {
+        if (isDebugEnabled()) {
+            Log.d(tag, format(format, arg1, arg2, null, null, null, 2));
+        }
+    }
+
+    public static void d(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        if (isDebugEnabled()) {
+            Log.d(tag, format(format, arg1, arg2, arg3, null, null, 3));
+        }
+    }
+
+    public static void d(String tag, String format, Object arg1, Object arg2, Object arg3, Object arg4) {
+        if (isDebugEnabled()) {
+            Log.d(tag, format(format, arg1, arg2, arg3, arg4, null, 4));
+        }
+    }
+
+    public static void d(String tag, String format, Object arg1, Object arg2, Object arg3, Object arg4,
+                         Object arg5) {
+        if (isDebugEnabled()) {
+            Log.d(tag, format(format, arg1, arg2, arg3, arg4, arg5, 5));
+        }
+    }
+
+    // Info
+
+    public static void i(String tag, String message) {
+        if (isEnabled(Log.INFO)) {
+            Log.i(tag, message);
+        }
+    }
+
+    public static void i(String tag, String format, Object arg1) {
+        if (isEnabled(Log.INFO)) {
+            Log.i(tag, format(format, arg1, null, null, null, null, 1));
+        }
+    }
+
+    public static void i(String tag, String format, Object arg1, Object arg2) {
+        if (isEnabled(Log.INFO)) {
+            Log.i(tag, format(format, arg1, arg2, null, null, null, 2));
+        }
+    }
+
+    public static void i(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(Log.INFO)) {
+            Log.i(tag, format(format, arg1, arg2, arg3, null, null, 3));
+        }
+    }
+
+    // Warning
+
+    public static void w(String tag, String message) {
+        if (isEnabled(Log.WARN)) {
+            Log.w(tag, message);
+        }
+    }
+
+    public static void w(String tag, String message, Throwable error) {
+        if (isEnabled(Log.WARN)) {
+            Log.w(tag, message, error);
+        }
+    }
+
+    public static void w(String tag, String format, Object arg1) {
+        if (isEnabled(Log.WARN)) {
+            Log.w(tag, format(format, arg1, null, null, null, null, 1));
+        }
+    }
+
+    public static void w(String tag, String format, Object arg1, Throwable error) {
+        if (isEnabled(Log.WARN)) {
+            Log.w(tag, format(format, arg1, null, null, null, null, 1), error);
+        }
+    }
+    
+    public static void w(String tag, String format, Object arg1, Object arg2) {
+        if (isEnabled(Log.WARN)) {
+            Log.w(tag, format(format, arg1, arg2, null, null, null, 2));
+        }
+    }
+
+    public static void w(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(Log.WARN)) {
+            Log.w(tag, format(format, arg1, arg2, arg3, null, null, 3));
+        }
+    }
+
+    public static void w(String tag, String format, Object arg1, Object arg2, Object arg3, Object arg4) {
+        if (isEnabled(Log.WARN)) {
+            Log.w(tag, format(format, arg1, arg2, arg3, arg4, null, 4));
+        }
+    }
+
+    public static void w(String tag, String format, Object arg1, Object arg2, Object arg3, Object arg4,
+                         Object arg5) {
+        if (isEnabled(Log.WARN)) {
+            Log.w(tag, format(format, arg1, arg2, arg3, arg4, arg5, 5));
+        }
+    }
+    
+    // Error
+
+    public static void e(String tag, String message) {
+        if (isEnabled(Log.ERROR)) {
+            Log.e(tag, message);
+        }
+    }
+
+    public static void e(String tag, String message, Throwable error) {
+        if (isEnabled(Log.ERROR)) {
+            Log.e(tag, message, error);
+        }
+    }
+
+    public static void e(String tag, String format, Object arg1) {
+        if (isEnabled(Log.ERROR)) {
+            Log.e(tag, format(format, arg1, null, null, null, null, 1));
+        }
+    }
+
+    public static void e(String tag, String format, Object arg1, Throwable error) {
+        if (isEnabled(Log.ERROR)) {
+            Log.e(tag, format(format, arg1, null, null, null, null, 1), error);
+        }
+    }
+
+    public static void e(String tag, String format, Object arg1, Object arg2) {
+        if (isEnabled(Log.ERROR)) {
+            Log.e(tag, format(format, arg1, arg2, null, null, null, 2));
+        }
+    }
+
+    public static void e(String tag, String format, Object arg1, Object arg2, Throwable error) {
+        if (isEnabled(Log.ERROR)) {
+            Log.e(tag, format(format, arg1, arg2, null, null, null, 2), error);
+        }
+    }
+
+    public static void e(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(Log.ERROR)) {
+            Log.e(tag, format(format, arg1, arg2, arg3, null, null, 3));
+        }
+    }
+
+    /**
+     * Debug logger for per-item messages that lets one call in {@code rate} through.
+     * The counter is only touched when debug logging is enabled.
+     */
+    public static final class Sampler {
+        private final String tag;
+        private final int rate;
+        private final AtomicLong calls = new AtomicLong();
+
+        public Sampler(String tag, int rate) {
+            this.tag = tag;
+            this.rate = Math.max(1, rate);
+        }
+
+        public void d(String format, Object arg1) {
+            if (isDebugEnabled() && sample()) {
+                Log.d(tag, format(format, arg1, null, null, null, null, 1));
+            }
+        }
+
+        public void d(String format, Object arg1, Object arg2) {
+            if (isDebugEnabled() && sample()) {
+                Log.d(tag, format(format, arg1, arg2, null, null, null, 2));
+            }
+        }
+
+        public void d(String format, Object arg1, Object arg2, Object arg3) {
+            if (isDebugEnabled() && sample()) {
+                Log.d(tag, format(format, arg1, arg2, arg3, null, null, 3));
+            }
+        }
+
+        public void d(String format, Object arg1, Object arg2, Object arg3, Object arg4) {
+            if (isDebugEnabled() && sample()) {
+                Log.d(tag, format(format, arg1, arg2, arg3, arg4, null, 4));
+            }
+        }
+
+        private boolean sample() {
+            return calls.getAndIncrement() % rate == 0;
+        }
+    }
+
+    /**
+     * Replace each {@code {}} in order; surplus placeholders are kept literally
+     */
+    static String format(String format, Object arg1, Object arg2, Object arg3, Object arg4, Object arg5,
+                         int argCount) {
+        StringBuilder builder = new StringBuilder(format.length() + 16 * argCount);
+        int argIndex = 0;
+        int start = 0;
+        int marker;
+        while (argIndex < argCount && (marker = format.indexOf("{}", start)) >= 0) {
+            builder.append(format, start, marker);
+            switch (argIndex) {
+                case 0: appendArg(builder, arg1); break;
+                case 1: appendArg(builder, arg2); break;
+                case 2: appendArg(builder, arg3); break;
+                case 3: appendArg(builder, arg4); break;
+                default: appendArg(builder, arg5); break;
+            }
+            argIndex++;
+            start = marker + 2;
+        }
+        builder.append(format, start, format.length());
+        return builder.toString();
+    }
+
+    private static void appendArg(StringBuilder builder, Object arg) {
+        String value = String.valueOf(arg);
+        if (value.length() > MAX_ARG_LENGTH) {
+            builder.append(value, 0, MAX_ARG_LENGTH)
+                .append("... (")
+                .append(value.length())
+                .append(" chars)");
+        } else {
+            builder.append(value);
+        }
+    }
+}
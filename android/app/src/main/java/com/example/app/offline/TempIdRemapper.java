@@ -0,0 +1,364 @@
+package com.example.app.offline;
+
+import com.example.app.database.AppDatabase;
+import com.example.app.database.EntityCache;
+import com.example.app.database.converter.PayloadCodec;
+import com.example.app.database.converter.PayloadReferences;
+import com.example.app.database.entity.DeadLetterItem;
+import com.example.app.database.entity.IdMapping;
+import com.example.app.database.entity.OfflineQueueItem;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps client-side temporary record ids to the ids assigned by the server.
+ *
+ * Creates are ordered ahead of the queue items that reference them, and once a create
+ * succeeds the server id from the {@code return=representation} response is written into
+ * the pending queue payloads and the local entity tables in a single transaction. A whole
+ * offline session can therefore upload in one pass.
+ */
+public class TempIdRemapper {
+    private static final String TAG = "TempIdRemapper";
+
+    private final AppDatabase database;
+    private final Gson gson = new Gson();
+    private final Map<String, String> mappings = new ConcurrentHashMap<>();
+
+    public TempIdRemapper(AppDatabase database) {
+        this.database = database;
+    }
+
+    /**
+     * Load persisted mappings so items queued before a restart still resolve
+     */
+    public void loadMappings() {
+        for (IdMapping mapping : database.idMappingDao().getAllMappings()) {
+            mappings.put(mapping.tempId, mapping.serverId);
+        }
+    }
+
+    /**
+     * Stable topological order: every item runs after the pending CREATEs it references,
+     * either by record id or through a value in its payload. Otherwise input order is kept.
+     * Payload references come from the index written with the item, so payloads are only
+     * decoded for items queued before that index existed.
+     */
+    public List<OfflineQueueItem> orderByDependencies(List<OfflineQueueItem> items) {
+        Map<String, Integer> createIndex = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            OfflineQueueItem item = items.get(i);
+            boolean creates = OfflineConfig.OP_CREATE.equals(item.operationType)
+                || OfflineConfig.OP_SALE_WITH_STOCK.equals(item.operationType);
+            if (creates && item.recordId != null) {
+                createIndex.put(item.recordId, i);
+            }
+        }
+        if (createIndex.isEmpty()) {
+            return items;
+        }
+
+        int size = items.size();
+        int[] inDegree = new int[size];
+        List<List<Integer>> dependents = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            dependents.add(new ArrayList<>());
+        }
+
+        for (int i = 0; i < size; i++) {
+            OfflineQueueItem item = items.get(i);
+            Set<Integer> parents = new HashSet<>();
+
+            Integer recordParent = createIndex.get(item.recordId);
+            if (recordParent != null && recordParent != i) {
+                parents.add(recordParent);
+            }
+            for (String value : referencesOf(item)) {
+                Integer parent = createIndex.get(value);
+                if (parent != null && parent != i) {
+                    parents.add(parent);
+                }
+            }
+
+            for (Integer parent : parents) {
+                dependents.get(parent).add(i);
+                inDegree[i]++;
+            }
+        }
+
+        // Kahn's algorithm, always releasing the lowest original index first
+        List<OfflineQueueItem> ordered = new ArrayList<>(size);
+        PriorityQueue<Integer> ready = new PriorityQueue<>();
+        for (int i = 0; i < size; i++) {
+            if (inDegree[i] == 0) {
+                ready.add(i);
+            }
+        }
+        while (!ready.isEmpty()) {
+            int index = ready.poll();
+            ordered.add(items.get(index));
+            for (int child : dependents.get(index)) {
+                if (--inDegree[child] == 0) {
+                    ready.add(child);
+                }
+            }
+        }
+
+        if (ordered.size() < size) {
+            // A cycle should not happen with well-formed payloads; keep the leftovers in input order
+            SyncLog.w(TAG, "Dependency cycle detected among {} queue items", size - ordered.size());
+            for (int i = 0; i < size; i++) {
+                if (inDegree[i] > 0) {
+                    ordered.add(items.get(i));
+                }
+            }
+        }
+
+        return ordered;
+    }
+
+    /**
+     * Rewrite an item in place with every server id learned so far
+     */
+    public void resolve(OfflineQueueItem item) {
+        if (mappings.isEmpty()) {
+            return;
+        }
+        String serverId = mappings.get(item.recordId);
+        if (serverId != null) {
+            item.recordId = serverId;
+        }
+        item.setData(rewritePayload(item.getData(), mappings));
+    }
+
+    /**
+     * Record the server id for a successful CREATE and propagate it to the local store
+     */
+    public void onCreateSucceeded(OfflineQueueItem item, String responseBody) {
+        String tempId = item.recordId;
+        String serverId = extractServerId(responseBody);
+
+        if (tempId == null || serverId == null || serverId.equals(tempId)) {
+            return;
+        }
+
+        database.runInTransaction(() -> {
+            IdMapping mapping = new IdMapping();
+            mapping.tempId = tempId;
+            mapping.tableName = item.tableName;
+            mapping.serverId = serverId;
+            mapping.createdAt = new Date();
+            database.idMappingDao().insertMapping(mapping);
+
+            Map<String, String> single = new HashMap<>();
+            single.put(tempId, serverId);
+
+            database.offlineQueueDao().remapRecordId(item.tableName, tempId, serverId);
+            for (OfflineQueueItem dependent : database.offlineQueueDao().getActiveItems()) {
+                String data = dependent.getData();
+                if (data != null && data.contains(tempId)) {
+                    dependent.setData(rewritePayload(data, single));
+                    database.offlineQueueDao().updateItem(dependent);
+                }
+            }
+
+            remapLocalTables(item.tableName, tempId, serverId);
+        });
+
+        mappings.put(tempId, serverId);
+        item.recordId = serverId;
+        if (SyncLog.DEBUG) {
+            SyncLog.d(TAG, "Mapped {}:{} -> {}", item.tableName, tempId, serverId);
+        }
+    }
+
+    /**
+     * Drop mappings older than the cutoff that no queued item or dead letter still
+     * references, by record id or in its payload. Referenced mappings are kept whatever
+     * their age, since a replayed or retried item still needs them to resolve.
+     */
+    public void pruneMappings(long cutoff) {
+        database.runInTransaction(() -> {
+            List<IdMapping> expired = database.idMappingDao().getMappingsOlderThan(cutoff);
+            if (expired.isEmpty()) {
+                return;
+            }
+
+            Set<String> referenced = new HashSet<>();
+            for (OfflineQueueItem item : database.offlineQueueDao().getActiveItems()) {
+                referenced.add(item.recordId);
+                Collections.addAll(referenced, referencesOf(item));
+            }
+            for (DeadLetterItem deadLetter : database.deadLetterDao().getAllDeadLetters()) {
+                referenced.add(deadLetter.recordId);
+                Collections.addAll(referenced,
+                    PayloadReferences.parse(PayloadReferences.index(PayloadCodec.decode(deadLetter.payload))));
+            }
+
+            List<IdMapping> unused = new ArrayList<>();
+            for (IdMapping mapping : expired) {
+                if (!referenced.contains(mapping.tempId)) {
+                    unused.add(mapping);
+                }
+            }
+            database.idMappingDao().deleteMappings(unused);
+            for (IdMapping mapping : unused) {
+                mappings.remove(mapping.tempId);
+            }
+            if (SyncLog.DEBUG) {
+                SyncLog.d(TAG, "Pruned {} of {} expired id mappings", unused.size(), expired.size());
+            }
+        });
+    }
+
+    private void remapLocalTables(String tableName, String tempId, String serverId) {
+        switch (tableName) {
+            case OfflineConfig.TABLE_SALES:
+                database.saleDao().remapId(tempId, serverId);
+                break;
+            case OfflineConfig.TABLE_ORDERS:
+                database.orderDao().remapId(tempId, serverId);
+                break;
+            case OfflineConfig.TABLE_STOCK:
+                database.stockDao().remapId(tempId, serverId);
+                break;
+            case OfflineConfig.TABLE_SUPERMARKETS:
+                database.supermarketDao().remapId(tempId, serverId);
+                database.saleDao().remapSupermarketId(tempId, serverId);
+                database.orderDao().remapSupermarketId(tempId, serverId);
+                // Any cached sale or order may carry the old supermarket id
+                EntityCache.evictTable(OfflineConfig.TABLE_SALES);
+                EntityCache.evictTable(OfflineConfig.TABLE_ORDERS);
+                break;
+            default:
+                break;
+        }
+        EntityCache.evict(tableName, tempId);
+        EntityCache.evict(tableName, serverId);
+    }
+
+    /**
+     * Read the {@code id} of the first row in a PostgREST representation response
+     */
+    static String extractServerId(String responseBody) {
+        if (responseBody == null || responseBody.isEmpty()) {
+            return null;
+        }
+        try {
+            JsonElement root = JsonParser.parseString(responseBody);
+            JsonObject row = null;
+            if (root.isJsonArray() && root.getAsJsonArray().size() > 0) {
+                row = root.getAsJsonArray().get(0).getAsJsonObject();
+            } else if (root.isJsonObject()) {
+                row = root.getAsJsonObject();
+            }
+            if (row != null && row.has("id") && !row.get("id").isJsonNull()) {
+                return row.get("id").getAsString();
+            }
+        } catch (Exception e) {
+            SyncLog.w(TAG, "Could not parse server id from response", e);
+        }
+        return null;
+    }
+
+    private String rewritePayload(String data, Map<String, String> replacements) {
+        if (data == null || data.isEmpty()) {
+            return data;
+        }
+        try {
+            JsonElement root = JsonParser.parseString(data);
+            if (rewriteElement(root, replacements)) {
+                return gson.toJson(root);
+            }
+        } catch (Exception e) {
+            SyncLog.w(TAG, "Could not rewrite payload", e);
+        }
+        return data;
+    }
+
+    private boolean rewriteElement(JsonElement element, Map<String, String> replacements) {
+        boolean changed = false;
+        if (element.isJsonObject()) {
+            JsonObject object = element.getAsJsonObject();
+            for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                JsonElement value = entry.getValue();
+                if (value.isJsonPrimitive() && value.getAsJsonPrimitive().isString()) {
+                    String serverId = replacements.get(value.getAsString());
+                    if (serverId != null) {
+                        entry.setValue(new JsonPrimitive(serverId));
+                        changed = true;
+                    }
+                } else if (rewriteElement(value, replacements)) {
+                    changed = true;
+                }
+            }
+        } else if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            for (int i = 0; i < array.size(); i++) {
+                JsonElement value = array.get(i);
+                if (value.isJsonPrimitive() && value.getAsJsonPrimitive().isString()) {
+                    String serverId = replacements.get(value.getAsString());
+                    if (serverId != null) {
+                        array.set(i, new JsonPrimitive(serverId));
+                        changed = true;
+                    }
+                } else if (rewriteElement(value, replacements)) {
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private String[] referencesOf(OfflineQueueItem item) {
+        if (item.referencedIds != null) {
+            return PayloadReferences.parse(item.referencedIds);
+        }
+        Set<String> values = collectStrings(item.getData());
+        return values.toArray(new String[0]);
+    }
+
+    private Set<String> collectStrings(String data) {
+        Set<String> values = new HashSet<>();
+        if (data == null || data.isEmpty()) {
+            return values;
+        }
+        try {
+            ArrayDeque<JsonElement> stack = new ArrayDeque<>();
+            stack.push(JsonParser.parseString(data));
+            while (!stack.isEmpty()) {
+                JsonElement element = stack.pop();
+                if (element.isJsonObject()) {
+                    for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                        stack.push(entry.getValue());
+                    }
+                } else if (element.isJsonArray()) {
+                    for (JsonElement child : element.getAsJsonArray()) {
+                        stack.push(child);
+                    }
+                } else if (element.isJsonPrimitive() && element.getAsJsonPrimitive().isString()) {
+                    values.add(element.getAsString());
+                }
+            }
+        } catch (Exception e) {
+            SyncLog.w(TAG, "Could not scan payload for references", e);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.app.offline;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+
+/**
+ * Generates client-side, time-ordered UUIDs (RFC 9562 version 7).
+ *
+ * The leading 48 bits are the Unix time in milliseconds, so ids sort by creation time and
+ * keep B-tree inserts on the server sequential. Ids generated within the same millisecond
+ * use a counter in the {@code rand_a} field to stay monotonic.
+ */
+public final class TimeOrderedId {
+    private static final SecureRandom random = new SecureRandom();
+
+    private static long lastTimestamp = -1;
+    private static int sequence = 0;
+
+    private TimeOrderedId() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Create a new version 7 UUID string
+     */
+    public static String next() {
+        long timestamp;
+        int counter;
+
+        synchronized (TimeOrderedId.class) {
+            timestamp = System.currentTimeMillis();
+            if (timestamp <= lastTimestamp) {
+                // Same millisecond or clock moved back: stay on the last timestamp and count up
+                timestamp = lastTimestamp;
+                sequence++;
+                if (sequence > 0xFFF) {
+                    timestamp++;
+                    sequence = random.nextInt(0x800);
+                }
+            } else {
+                sequence = random.nextInt(0x800);
+            }
+            lastTimestamp = timestamp;
+            counter = sequence;
+        }
+
+        long mostSigBits = (timestamp & 0xFFFF_FFFF_FFFFL) << 16
+                | 0x7000L
+                | (counter & 0xFFFL);
+        long leastSigBits = (random.nextLong() & 0x3FFF_FFFF_FFFF_FFFFL)
+                | 0x8000_0000_0000_0000L;
+
+        return new UUID(mostSigBits, leastSigBits).toString();
+    }
+}
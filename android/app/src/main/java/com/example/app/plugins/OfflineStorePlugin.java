@@ -0,0 +1,312 @@
+package com.example.app.plugins;
+
+import android.util.Log;
+
+import com.example.app.database.AppDatabase;
+import com.example.app.database.ChangeStreams;
+import com.example.app.database.EntityCache;
+import com.example.app.database.EntityPager;
+import com.example.app.database.Page;
+import com.example.app.database.ValueChangeStream;
+import com.example.app.database.converter.EntityTypeAdapters;
+import com.example.app.offline.DeadLetterQueue;
+import com.example.app.offline.OfflineConfig;
+import com.example.app.offline.OfflineHelper;
+import com.example.app.offline.OfflineSyncManager;
+import com.example.app.offline.QueueCounters;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Capacitor bridge to the offline store.
+ *
+ * Every method moves a whole batch across the bridge as one JSON array and does its
+ * database work on a background executor, so the number of bridge crossings per screen
+ * does not grow with the number of rows.
+ */
+@CapacitorPlugin(name = "OfflineStore")
+public class OfflineStorePlugin extends Plugin {
+    private static final String TAG = "OfflineStorePlugin";
+    private static final String EVENT_QUEUE_STATS = "queueStats";
+    
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    
+    private AppDatabase database;
+    private EntityPager pager;
+    private OfflineHelper offlineHelper;
+    private ValueChangeStream<QueueStats> queueStatsStream;
+    
+    @Override
+    public void load() {
+        database = AppDatabase.getInstance(getContext());
+        pager = new EntityPager(database);
+        offlineHelper = new OfflineHelper(getContext());
+    }
+    
+    /**
+     * enqueue({ items: [{ operation, table, recordId?, data?, priority? }] }) -> { accepted, total }
+     */
+    @PluginMethod
+    public void enqueue(PluginCall call) {
+        JSArray items = call.getArray("items");
+        if (items == null) {
+            call.reject("items is required");
+            return;
+        }
+        
+        executor.execute(() -> {
+            try {
+                List<OfflineSyncManager.PendingOperation> operations = new ArrayList<>(items.length());
+                for (int i = 0; i < items.length(); i++) {
+                    operations.add(toOperation(items.getJSONObject(i)));
+                }
+                
+                int accepted = offlineHelper.queueOperations(operations);
+                JSObject result = new JSObject();
+                result.put("accepted", accepted);
+                result.put("total", operations.size());
+                call.resolve(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Error enqueueing batch", e);
+                call.reject("Error enqueueing batch: " + e.getMessage(), e);
+            }
+        });
+    }
+    
+    /**
+     * getPage({ table, supermarketId?, beforeDate?, beforeId?, pageSize? })
+     *   -> { items, hasMore, nextBeforeDate, nextBeforeId }
+     */
+    @PluginMethod
+    public void getPage(PluginCall call) {
+        String table = call.getString("table");
+        String supermarketId = call.getString("supermarketId");
+        Long beforeDate = call.getLong("beforeDate");
+        String beforeId = call.getString("beforeId");
+        int pageSize = call.getInt("pageSize", EntityPager.DEFAULT_PAGE_SIZE);
+        
+        executor.execute(() -> {
+            try {
+                Page<?> page;
+                if (OfflineConfig.TABLE_SALES.equals(table)) {
+                    page = supermarketId != null
+                        ? pager.getSalesBySupermarket(supermarketId, beforeDate, beforeId, pageSize)
+                        : pager.getSales(beforeDate, beforeId, pageSize);
+                } else if (OfflineConfig.TABLE_ORDERS.equals(table)) {
+                    page = supermarketId != null
+                        ? pager.getOrdersBySupermarket(supermarketId, beforeDate, beforeId, pageSize)
+                        : pager.getOrders(beforeDate, beforeId, pageSize);
+                } else if (OfflineConfig.TABLE_STOCK.equals(table)) {
+                    page = pager.getStock(beforeDate, beforeId, pageSize);
+                } else {
+                    call.reject("Unsupported table: " + table);
+                    return;
+                }
+                
+                JSObject result = new JSObject();
+                result.put("items", new JSArray(EntityTypeAdapters.GSON.toJson(page.items)));
+                result.put("hasMore", page.hasMore);
+                result.put("nextBeforeDate", page.nextBeforeDate);
+                result.put("nextBeforeId", page.nextBeforeId);
+                call.resolve(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Error reading page of " + table, e);
+                call.reject("Error reading page: " + e.getMessage(), e);
+            }
+        });
+    }
+    
+    /**
+     * replayDeadLetters({ table?, minStatus?, maxStatus? }) -> { replayed }
+     */
+    @PluginMethod
+    public void replayDeadLetters(PluginCall call) {
+        DeadLetterQueue.Filter filter = new DeadLetterQueue.Filter(
+            call.getString("table"),
+            call.getInt("minStatus", Integer.MIN_VALUE),
+            call.getInt("maxStatus", Integer.MAX_VALUE));
+        
+        executor.execute(() -> {
+            try {
+                JSObject result = new JSObject();
+                result.put("replayed", offlineHelper.replayDeadLetters(filter));
+                call.resolve(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Error replaying dead letters", e);
+                call.reject("Error replaying dead letters: " + e.getMessage(), e);
+            }
+        });
+    }
+    
+    /**
+     * discardDeadLetters({ table?, minStatus?, maxStatus? }) -> { discarded }
+     */
+    @PluginMethod
+    public void discardDeadLetters(PluginCall call) {
+        DeadLetterQueue.Filter filter = new DeadLetterQueue.Filter(
+            call.getString("table"),
+            call.getInt("minStatus", Integer.MIN_VALUE),
+            call.getInt("maxStatus", Integer.MAX_VALUE));
+        
+        executor.execute(() -> {
+            try {
+                JSObject result = new JSObject();
+                result.put("discarded", offlineHelper.discardDeadLetters(filter));
+                call.resolve(result);
+            } catch (Exception e) {
+                Log.e(TAG, "Error discarding dead letters", e);
+                call.reject("Error discarding dead letters: " + e.getMessage(), e);
+            }
+        });
+    }
+    
+    @PluginMethod
+    public void getQueueStats(PluginCall call) {
+        executor.execute(() -> call.resolve(readQueueStats().toJSObject()));
+    }
+    
+    /**
+     * getCacheStats() -> { sales: { hits, misses, size, hitRatio }, ... }
+     */
+    @PluginMethod
+    public void getCacheStats(PluginCall call) {
+        JSObject result = new JSObject();
+        for (Map.Entry<String, EntityCache.Stats> entry : offlineHelper.getCacheStats().entrySet()) {
+            EntityCache.Stats stats = entry.getValue();
+            JSObject table = new JSObject();
+            table.put("hits", stats.hits);
+            table.put("misses", stats.misses);
+            table.put("size", stats.size);
+            table.put("hitRatio", stats.hitRatio());
+            result.put(entry.getKey(), table);
+        }
+        call.resolve(result);
+    }
+    
+    /**
+     * Emit "queueStats" events whenever any of the stats changes, instead of polling
+     */
+    @PluginMethod
+    public void startQueueStatsUpdates(PluginCall call) {
+        if (queueStatsStream == null) {
+            queueStatsStream = ChangeStreams.queueValue(database, this::readQueueStats);
+            queueStatsStream.start(stats -> notifyListeners(EVENT_QUEUE_STATS, stats.toJSObject()));
+        }
+        call.resolve();
+    }
+    
+    @PluginMethod
+    public void stopQueueStatsUpdates(PluginCall call) {
+        stopQueueStats();
+        call.resolve();
+    }
+    
+    @Override
+    protected void handleOnDestroy() {
+        stopQueueStats();
+        offlineHelper.cleanup();
+        executor.shutdown();
+        super.handleOnDestroy();
+    }
+    
+    private void stopQueueStats() {
+        if (queueStatsStream != null) {
+            queueStatsStream.stop();
+            queueStatsStream = null;
+        }
+    }
+    
+    private QueueStats readQueueStats() {
+        QueueCounters.Snapshot counters = QueueCounters.getInstance(database).getSnapshot();
+        return new QueueStats(
+            counters.countByStatus(OfflineConfig.STATUS_PENDING),
+            counters.countByStatus(OfflineConfig.STATUS_FAILED),
+            counters.activeCount(),
+            counters.deadLetterCount,
+            offlineHelper.getQueuePressure());
+    }
+    
+    /**
+     * Value of one "queueStats" event; equal stats are not emitted twice
+     */
+    private static final class QueueStats {
+        final int pending;
+        final int failed;
+        final int queueSize;
+        final int deadLetters;
+        final OfflineSyncManager.QueuePressure pressure;
+        
+        QueueStats(int pending, int failed, int queueSize, int deadLetters,
+                   OfflineSyncManager.QueuePressure pressure) {
+            this.pending = pending;
+            this.failed = failed;
+            this.queueSize = queueSize;
+            this.deadLetters = deadLetters;
+            this.pressure = pressure;
+        }
+        
+        JSObject toJSObject() {
+            JSObject stats = new JSObject();
+            stats.put("pending", pending);
+            stats.put("failed", failed);
+            stats.put("queueSize", queueSize);
+            stats.put("deadLetters", deadLetters);
+            stats.put("pressure", pressure.name());
+            return stats;
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof QueueStats)) {
+                return false;
+            }
+            QueueStats that = (QueueStats) other;
+            return pending == that.pending && failed == that.failed && queueSize == that.queueSize
+                && deadLetters == that.deadLetters && pressure == that.pressure;
+        }
+        
+        @Override
+        public int hashCode() {
+            return ((((pending * 31) + failed) * 31 + queueSize) * 31 + deadLetters) * 31 + pressure.hashCode();
+        }
+    }
+    
+    private OfflineSyncManager.PendingOperation toOperation(JSONObject item) throws Exception {
+        String operation = item.getString("operation");
+        if (!OfflineSyncManager.isSupportedOperation(operation)) {
+            throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+        String table = item.getString("table");
+        int priority = item.optInt("priority", OfflineConfig.PRIORITY_MEDIUM);
+        Object data = item.opt("data");
+        JsonElement payload = data != null ? JsonParser.parseString(data.toString()) : null;
+        
+        if (OfflineConfig.OP_CREATE.equals(operation) && payload != null) {
+            return offlineHelper.createOperation(table, payload, priority);
+        }
+        if (OfflineConfig.OP_SALE_WITH_STOCK.equals(operation)) {
+            if (payload == null) {
+                throw new IllegalArgumentException("SALE_WITH_STOCK needs data");
+            }
+            return offlineHelper.saleWithStockOperation(payload, priority);
+        }
+        
+        String recordId = item.getString("recordId");
+        String json = payload != null && !OfflineConfig.OP_DELETE.equals(operation) ? payload.toString() : "";
+        return new OfflineSyncManager.PendingOperation(operation, table, recordId, json, priority);
+    }
+}
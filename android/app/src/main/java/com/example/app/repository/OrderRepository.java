@@ -0,0 +1,66 @@
+package com.example.app.repository;
+
+import android.content.Context;
+
+import com.example.app.database.AppDatabase;
+import com.example.app.database.ChangeStream;
+import com.example.app.database.ChangeStreams;
+import com.example.app.database.EntityCache;
+import com.example.app.database.ListChangeStream;
+import com.example.app.database.dao.OrderDao;
+import com.example.app.database.entity.Order;
+import com.example.app.offline.OfflineConfig;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Order reads served from Room at once, revalidated against Supabase in the background.
+ * Methods query the database, so call them off the main thread.
+ */
+public class OrderRepository {
+    private static final String TABLE = OfflineConfig.TABLE_ORDERS;
+    
+    private final AppDatabase database;
+    private final OrderDao orderDao;
+    private final RevalidationCoordinator coordinator;
+    private final EntityCache entityCache;
+    
+    public OrderRepository(Context context) {
+        this.database = AppDatabase.getInstance(context);
+        this.orderDao = database.orderDao();
+        this.coordinator = RevalidationCoordinator.getInstance(context);
+        this.entityCache = EntityCache.getInstance(database);
+    }
+    
+    public List<Order> getRecentOrders(int limit) {
+        coordinator.revalidate(TABLE);
+        return orderDao.getOrdersPageFirst(limit);
+    }
+    
+    public List<Order> getOrdersBySupermarket(String supermarketId) {
+        coordinator.revalidate(TABLE);
+        return orderDao.getOrdersBySupermarket(supermarketId);
+    }
+    
+    public List<Order> getOrdersByStatus(String status) {
+        coordinator.revalidate(TABLE);
+        return orderDao.getOrdersByStatus(status);
+    }
+    
+    public Order getOrder(String id) {
+        coordinator.revalidate(TABLE);
+        return entityCache.getOrder(id);
+    }
+    
+    public ListChangeStream<Order> observeRecentOrders(int limit, ChangeStream.Listener<ListChangeStream.Diff<Order>> listener) {
+        ListChangeStream<Order> stream = ChangeStreams.recentOrders(database, limit);
+        stream.start(listener);
+        coordinator.revalidate(TABLE);
+        return stream;
+    }
+    
+    public Future<Long> refresh() {
+        return coordinator.refresh(TABLE);
+    }
+}
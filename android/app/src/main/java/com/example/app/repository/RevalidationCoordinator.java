@@ -0,0 +1,113 @@
+package com.example.app.repository;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.app.offline.OfflineConfig;
+import com.example.app.offline.SnapshotBootstrapper;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Decides when a table's local copy is stale and refreshes it in the background.
+ *
+ * Each table has a TTL; a read of a stale table starts one refresh, and every reader that
+ * arrives while it runs shares the same Future instead of issuing its own request. Refreshed
+ * rows land in Room, so observers of the change streams see them without re-reading.
+ */
+public class RevalidationCoordinator {
+    private static final String TAG = "RevalidationCoordinator";
+    private static volatile RevalidationCoordinator INSTANCE;
+    
+    private final SnapshotBootstrapper fetcher;
+    private final ExecutorService fetchExecutor = Executors.newSingleThreadExecutor();
+    private final ConcurrentHashMap<String, FutureTask<Long>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> lastRefreshed = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> lastFailed = new ConcurrentHashMap<>();
+    
+    private RevalidationCoordinator(Context context) {
+        this.fetcher = SnapshotBootstrapper.getInstance(context);
+    }
+    
+    public static RevalidationCoordinator getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (RevalidationCoordinator.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new RevalidationCoordinator(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+    
+    /**
+     * Refresh the table if its TTL has passed
+     * @return The refresh in progress, or null if the local copy is still fresh
+     */
+    public Future<Long> revalidate(String table) {
+        long now = System.currentTimeMillis();
+        Long refreshedAt = lastRefreshed.get(table);
+        if (refreshedAt != null && now - refreshedAt < ttlFor(table)) {
+            return null;
+        }
+        Long failedAt = lastFailed.get(table);
+        if (failedAt != null && now - failedAt < OfflineConfig.REPOSITORY_RETRY_INTERVAL) {
+            return null;
+        }
+        return refresh(table);
+    }
+    
+    /**
+     * Refresh the table now, joining a refresh that is already running
+     */
+    public Future<Long> refresh(String table) {
+        FutureTask<Long> task = new FutureTask<>(() -> {
+            try {
+                long rows = fetcher.refreshTable(table, null);
+                lastRefreshed.put(table, System.currentTimeMillis());
+                lastFailed.remove(table);
+                return rows;
+            } catch (Exception e) {
+                lastFailed.put(table, System.currentTimeMillis());
+                Log.w(TAG, "Refresh of " + table + " failed, serving local data", e);
+                throw e;
+            } finally {
+                inFlight.remove(table);
+            }
+        });
+        
+        FutureTask<Long> running = inFlight.putIfAbsent(table, task);
+        if (running != null) {
+            return running;
+        }
+        fetchExecutor.execute(task);
+        return task;
+    }
+    
+    /**
+     * Mark a table stale so the next read refreshes it
+     */
+    public void invalidate(String table) {
+        lastRefreshed.remove(table);
+        lastFailed.remove(table);
+    }
+    
+    private static long ttlFor(String table) {
+        switch (table) {
+            case OfflineConfig.TABLE_SALES:
+                return OfflineConfig.REPOSITORY_TTL_SALES;
+            case OfflineConfig.TABLE_ORDERS:
+                return OfflineConfig.REPOSITORY_TTL_ORDERS;
+            case OfflineConfig.TABLE_STOCK:
+                return OfflineConfig.REPOSITORY_TTL_STOCK;
+            case OfflineConfig.TABLE_SUPERMARKETS:
+                return OfflineConfig.REPOSITORY_TTL_SUPERMARKETS;
+            default:
+                return 0;
+        }
+    }
+}
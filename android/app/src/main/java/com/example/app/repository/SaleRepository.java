@@ -0,0 +1,72 @@
+package com.example.app.repository;
+
+import android.content.Context;
+
+import com.example.app.database.AppDatabase;
+import com.example.app.database.ChangeStream;
+import com.example.app.database.ChangeStreams;
+import com.example.app.database.EntityCache;
+import com.example.app.database.ListChangeStream;
+import com.example.app.database.dao.SaleDao;
+import com.example.app.database.entity.Sale;
+import com.example.app.offline.OfflineConfig;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Sales reads served from Room at once, revalidated against Supabase in the background.
+ * Methods query the database, so call them off the main thread.
+ */
+public class SaleRepository {
+    private static final String TABLE = OfflineConfig.TABLE_SALES;
+    
+    private final AppDatabase database;
+    private final SaleDao saleDao;
+    private final RevalidationCoordinator coordinator;
+    private final EntityCache entityCache;
+    
+    public SaleRepository(Context context) {
+        this.database = AppDatabase.getInstance(context);
+        this.saleDao = database.saleDao();
+        this.coordinator = RevalidationCoordinator.getInstance(context);
+        this.entityCache = EntityCache.getInstance(database);
+    }
+    
+    public List<Sale> getRecentSales(int limit) {
+        coordinator.revalidate(TABLE);
+        return saleDao.getSalesPageFirst(limit);
+    }
+    
+    public List<Sale> getSalesBySupermarket(String supermarketId) {
+        coordinator.revalidate(TABLE);
+        return saleDao.getSalesBySupermarket(supermarketId);
+    }
+    
+    public List<Sale> getUnpaidSales() {
+        coordinator.revalidate(TABLE);
+        return saleDao.getUnpaidSales();
+    }
+    
+    public Sale getSale(String id) {
+        coordinator.revalidate(TABLE);
+        return entityCache.getSale(id);
+    }
+    
+    /**
+     * Recent sales now and after every change, including rows written by a background refresh
+     */
+    public ListChangeStream<Sale> observeRecentSales(int limit, ChangeStream.Listener<ListChangeStream.Diff<Sale>> listener) {
+        ListChangeStream<Sale> stream = ChangeStreams.recentSales(database, limit);
+        stream.start(listener);
+        coordinator.revalidate(TABLE);
+        return stream;
+    }
+    
+    /**
+     * Force a refresh, e.g. pull-to-refresh
+     */
+    public Future<Long> refresh() {
+        return coordinator.refresh(TABLE);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.app.repository;
+
+import android.content.Context;
+
+import com.example.app.database.AppDatabase;
+import com.example.app.database.ChangeStream;
+import com.example.app.database.ChangeStreams;
+import com.example.app.database.EntityCache;
+import com.example.app.database.ListChangeStream;
+import com.example.app.database.dao.StockDao;
+import com.example.app.database.entity.Stock;
+import com.example.app.offline.OfflineConfig;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Stock reads served from Room at once, revalidated against Supabase in the background.
+ * Methods query the database, so call them off the main thread.
+ */
+public class StockRepository {
+    private static final String TABLE = OfflineConfig.TABLE_STOCK;
+    
+    private final AppDatabase database;
+    private final StockDao stockDao;
+    private final RevalidationCoordinator coordinator;
+    private final EntityCache entityCache;
+    
+    public StockRepository(Context context) {
+        this.database = AppDatabase.getInstance(context);
+        this.stockDao = database.stockDao();
+        this.coordinator = RevalidationCoordinator.getInstance(context);
+        this.entityCache = EntityCache.getInstance(database);
+    }
+    
+    public List<Stock> getRecentStock(int limit) {
+        coordinator.revalidate(TABLE);
+        return stockDao.getStockPageFirst(limit);
+    }
+    
+    public Stock getLatestStock() {
+        coordinator.revalidate(TABLE);
+        return stockDao.getLatestStock();
+    }
+    
+    public Stock getStock(String id) {
+        coordinator.revalidate(TABLE);
+        return entityCache.getStock(id);
+    }
+    
+    public ListChangeStream<Stock> observeRecentStock(int limit, ChangeStream.Listener<ListChangeStream.Diff<Stock>> listener) {
+        ListChangeStream<Stock> stream = ChangeStreams.recentStock(database, limit);
+        stream.start(listener);
+        coordinator.revalidate(TABLE);
+        return stream;
+    }
+    
+    public Future<Long> refresh() {
+        return coordinator.refresh(TABLE);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.app.repository;
+
+import android.content.Context;
+
+import com.example.app.database.AppDatabase;
+import com.example.app.database.ChangeStream;
+import com.example.app.database.ChangeStreams;
+import com.example.app.database.EntityCache;
+import com.example.app.database.ListChangeStream;
+import com.example.app.database.dao.SupermarketDao;
+import com.example.app.database.entity.Supermarket;
+import com.example.app.offline.OfflineConfig;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Supermarket reads served from Room at once, revalidated against Supabase in the background.
+ * Methods query the database, so call them off the main thread.
+ */
+public class SupermarketRepository {
+    private static final String TABLE = OfflineConfig.TABLE_SUPERMARKETS;
+    
+    private final AppDatabase database;
+    private final SupermarketDao supermarketDao;
+    private final RevalidationCoordinator coordinator;
+    private final EntityCache entityCache;
+    
+    public SupermarketRepository(Context context) {
+        this.database = AppDatabase.getInstance(context);
+        this.supermarketDao = database.supermarketDao();
+        this.coordinator = RevalidationCoordinator.getInstance(context);
+        this.entityCache = EntityCache.getInstance(database);
+    }
+    
+    public List<Supermarket> getSupermarkets() {
+        coordinator.revalidate(TABLE);
+        return supermarketDao.getAllSupermarkets();
+    }
+    
+    public List<Supermarket> search(String term) {
+        coordinator.revalidate(TABLE);
+        return supermarketDao.searchSupermarkets(term);
+    }
+    
+    public Supermarket getSupermarket(String id) {
+        coordinator.revalidate(TABLE);
+        return entityCache.getSupermarket(id);
+    }
+    
+    public ListChangeStream<Supermarket> observeSupermarkets(ChangeStream.Listener<ListChangeStream.Diff<Supermarket>> listener) {
+        ListChangeStream<Supermarket> stream = ChangeStreams.supermarkets(database);
+        stream.start(listener);
+        coordinator.revalidate(TABLE);
+        return stream;
+    }
+    
+    public Future<Long> refresh() {
+        return coordinator.refresh(TABLE);
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.app.offline;
+
+import static org.junit.Assert.*;
+
+import com.example.app.database.entity.OfflineQueueItem;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class QueueSchedulerTest {
+    private static final long MINUTE = 60_000;
+    private static final long HOUR = 60 * MINUTE;
+
+    private final QueueScheduler scheduler = new QueueScheduler();
+    private int nextId = 1;
+
+    @Test
+    public void backlogSpanningHoursKeepsWeightedInterleaving() {
+        long now = System.currentTimeMillis();
+        List<OfflineQueueItem> pending = new ArrayList<>();
+        // Weight 2: 100 items queued between three and two hours ago
+        for (int i = 0; i < 100; i++) {
+            pending.add(item(OfflineConfig.PRIORITY_LOW, OfflineConfig.TABLE_SUPERMARKETS,
+                now - 3 * HOUR + i * 36_000L));
+        }
+        // Weight 16: 400 items queued over the last hour
+        for (int i = 0; i < 400; i++) {
+            pending.add(item(OfflineConfig.PRIORITY_HIGH, OfflineConfig.TABLE_SALES,
+                now - HOUR + i * 9_000L));
+        }
+
+        List<OfflineQueueItem> ordered = scheduler.schedule(pending);
+
+        assertEquals(pending.size(), ordered.size());
+        // 2:16 shares, not the older class first
+        int low = countTable(ordered.subList(0, 90), OfflineConfig.TABLE_SUPERMARKETS);
+        assertTrue("low-priority share of the first 90 was " + low, low >= 9 && low <= 11);
+        assertFifoPerClass(ordered);
+    }
+
+    @Test
+    public void agingGivesAHeadStartButNotFifo() {
+        long now = System.currentTimeMillis();
+        List<OfflineQueueItem> pending = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            pending.add(item(OfflineConfig.PRIORITY_HIGH, OfflineConfig.TABLE_SALES, now));
+        }
+        for (int i = 0; i < 20; i++) {
+            pending.add(item(OfflineConfig.PRIORITY_LOW, OfflineConfig.TABLE_SUPERMARKETS,
+                now - 3 * HOUR + i * MINUTE));
+        }
+
+        List<OfflineQueueItem> ordered = scheduler.schedule(pending);
+
+        // The waiting class goes first, then falls back to its weighted share
+        assertEquals(OfflineConfig.TABLE_SUPERMARKETS, ordered.get(0).tableName);
+        int low = countTable(ordered.subList(0, 20), OfflineConfig.TABLE_SUPERMARKETS);
+        assertTrue("low-priority share of the first 20 was " + low, low >= 2 && low <= 5);
+        assertFifoPerClass(ordered);
+    }
+
+    @Test
+    public void equalAgesFollowTheWeights() {
+        long now = System.currentTimeMillis();
+        List<OfflineQueueItem> pending = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            pending.add(item(OfflineConfig.PRIORITY_HIGH, OfflineConfig.TABLE_SALES, now));
+            pending.add(item(OfflineConfig.PRIORITY_MEDIUM, OfflineConfig.TABLE_SUPERMARKETS, now));
+        }
+
+        List<OfflineQueueItem> ordered = scheduler.schedule(pending);
+
+        // Weights 16 and 4
+        assertEquals(10, countTable(ordered.subList(0, 50), OfflineConfig.TABLE_SUPERMARKETS));
+    }
+
+    private OfflineQueueItem item(int priority, String tableName, long createdAt) {
+        OfflineQueueItem item = new OfflineQueueItem();
+        item.id = nextId++;
+        item.operationType = OfflineConfig.OP_UPDATE;
+        item.tableName = tableName;
+        item.recordId = "record-" + item.id;
+        item.priority = priority;
+        item.status = OfflineConfig.STATUS_PENDING;
+        item.createdAt = new Date(createdAt);
+        return item;
+    }
+
+    private static int countTable(List<OfflineQueueItem> items, String tableName) {
+        int count = 0;
+        for (OfflineQueueItem item : items) {
+            if (tableName.equals(item.tableName)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void assertFifoPerClass(List<OfflineQueueItem> ordered) {
+        Map<String, Integer> lastId = new HashMap<>();
+        for (OfflineQueueItem item : ordered) {
+            String key = QueueScheduler.classKey(item.priority, item.tableName);
+            Integer previous = lastId.get(key);
+            assertTrue("class " + key + " out of order", previous == null || previous < item.id);
+            lastId.put(key, item.id);
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.example.app.offline;
+
+import static org.junit.Assert.*;
+
+import com.example.app.database.entity.Sale;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class RealtimeClientTest {
+    private static final String API_KEY = "test-key";
+    private static final String TOPIC = "realtime:offline-sync";
+    private static final long HEARTBEAT_INTERVAL = 100;
+    private static final long TIMEOUT = 5_000;
+
+    private final FakeStore store = new FakeStore();
+    private final BlockingQueue<RealtimeClient.State> states = new LinkedBlockingQueue<>();
+
+    private MockWebServer server;
+    private RealtimeClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (client != null) {
+            client.shutdown();
+        }
+        server.shutdown();
+    }
+
+    @Test
+    public void joinSubscribesToTheChannelAndPullsTheGap() throws Exception {
+        PhoenixServer phoenix = new PhoenixServer(true);
+        server.enqueue(new MockResponse().withWebSocketUpgrade(phoenix));
+        start(reconnectStrategy());
+
+        RecordedRequest upgrade = server.takeRequest(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertEquals(API_KEY, upgrade.getRequestUrl().queryParameter("apikey"));
+        assertEquals("1.0.0", upgrade.getRequestUrl().queryParameter("vsn"));
+
+        JsonObject join = phoenix.awaitEvent("phx_join");
+        assertEquals(TOPIC, join.get("topic").getAsString());
+        JsonObject payload = join.getAsJsonObject("payload");
+        assertEquals(API_KEY, payload.get("access_token").getAsString());
+        Set<String> tables = new HashSet<>();
+        JsonArray changes = payload.getAsJsonObject("config").getAsJsonArray("postgres_changes");
+        for (int i = 0; i < changes.size(); i++) {
+            tables.add(changes.get(i).getAsJsonObject().get("table").getAsString());
+        }
+        assertEquals(new HashSet<>(Arrays.asList(OfflineConfig.TABLE_SALES,
+            OfflineConfig.TABLE_ORDERS, "payments", "stock_history")), tables);
+
+        awaitState(RealtimeClient.State.JOINED);
+        assertTrue("no delta pull after join", store.awaitPulls(1));
+    }
+
+    @Test
+    public void postgresChangesAreAppliedInOrder() throws Exception {
+        PhoenixServer phoenix = new PhoenixServer(true);
+        server.enqueue(new MockResponse().withWebSocketUpgrade(phoenix));
+        store.pendingEdits.add(OfflineConfig.TABLE_ORDERS + ":order-1");
+        start(reconnectStrategy());
+        awaitState(RealtimeClient.State.JOINED);
+
+        phoenix.push(change(OfflineConfig.TABLE_SALES, "INSERT", "record",
+            "{\"id\":\"sale-1\",\"quantity\":3}"));
+        phoenix.push(change("stock_history", "DELETE", "old_record", "{\"id\":\"movement-1\"}"));
+        // Queued locally, so the server copy must not overwrite it
+        phoenix.push(change(OfflineConfig.TABLE_ORDERS, "UPDATE", "record", "{\"id\":\"order-1\"}"));
+        phoenix.push(change(OfflineConfig.TABLE_SALES, "UPDATE", "record",
+            "{\"id\":\"sale-2\",\"quantity\":7}"));
+
+        Sale first = (Sale) store.written.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertEquals("sale-1", first.id);
+        assertEquals(3, first.quantity);
+        assertEquals(OfflineConfig.TABLE_STOCK + ":movement-1",
+            store.deleted.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+        // Changes apply one at a time, so the skipped order would have come before sale-2
+        Sale second = (Sale) store.written.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertEquals("sale-2", second.id);
+        assertTrue(store.written.isEmpty());
+    }
+
+    @Test
+    public void answeredHeartbeatsKeepTheSocketOpen() throws Exception {
+        PhoenixServer phoenix = new PhoenixServer(true);
+        server.enqueue(new MockResponse().withWebSocketUpgrade(phoenix));
+        start(reconnectStrategy());
+        awaitState(RealtimeClient.State.JOINED);
+
+        phoenix.awaitEvent("heartbeat");
+        Thread.sleep(HEARTBEAT_INTERVAL * 5);
+
+        assertEquals(RealtimeClient.State.JOINED, client.getState());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void unansweredHeartbeatDropsTheSocketAndReconnects() throws Exception {
+        PhoenixServer silent = new PhoenixServer(false);
+        server.enqueue(new MockResponse().withWebSocketUpgrade(silent));
+        server.enqueue(new MockResponse().withWebSocketUpgrade(new PhoenixServer(true)));
+        start(reconnectStrategy());
+        awaitState(RealtimeClient.State.JOINED);
+
+        silent.awaitEvent("heartbeat");
+        awaitState(RealtimeClient.State.WAITING_TO_RECONNECT);
+        awaitState(RealtimeClient.State.JOINED);
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void reconnectBacksOffAndResetsAfterAJoin() throws Exception {
+        final List<Long> arrivals = Collections.synchronizedList(new ArrayList<Long>());
+        final PhoenixServer phoenix = new PhoenixServer(true);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                arrivals.add(System.nanoTime());
+                // Three refused upgrades, then a working socket
+                if (arrivals.size() <= 3) {
+                    return new MockResponse().setResponseCode(503);
+                }
+                return new MockResponse().withWebSocketUpgrade(phoenix);
+            }
+        });
+        start(reconnectStrategy());
+        awaitState(RealtimeClient.State.JOINED);
+
+        assertEquals(4, arrivals.size());
+        assertGapAtLeast(arrivals, 1, 100);
+        assertGapAtLeast(arrivals, 2, 200);
+        assertGapAtLeast(arrivals, 3, 400);
+
+        // A successful join starts the backoff over
+        long closedAt = System.nanoTime();
+        phoenix.close();
+        awaitState(RealtimeClient.State.WAITING_TO_RECONNECT);
+        awaitState(RealtimeClient.State.JOINED);
+        long afterJoin = TimeUnit.NANOSECONDS.toMillis(arrivals.get(4) - closedAt);
+        assertTrue("reconnect after a join took " + afterJoin + "ms", afterJoin < 400);
+    }
+
+    private void start(RetryStrategy reconnectStrategy) {
+        SupabaseApiClient apiClient = new SupabaseApiClient(server.url("/rest/v1/").toString(), API_KEY);
+        client = new RealtimeClient(store, apiClient, server.url("/socket").toString(), API_KEY,
+            HEARTBEAT_INTERVAL, reconnectStrategy);
+        client.setListener(new RealtimeClient.Listener() {
+            @Override
+            public void onStateChanged(RealtimeClient.State state) {
+                states.add(state);
+            }
+
+            @Override
+            public void onRemoteChange(String tableName, String changeType, String recordId) {
+            }
+        });
+        client.start();
+    }
+
+    private static RetryStrategy reconnectStrategy() {
+        // 100, 200, 400ms without jitter
+        return new RetryStrategy(Integer.MAX_VALUE, 100, 2.0, 1_000, false);
+    }
+
+    private void awaitState(RealtimeClient.State expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (System.currentTimeMillis() < deadline) {
+            RealtimeClient.State state = states.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+            if (state == expected) {
+                return;
+            }
+        }
+        fail("never reached " + expected + ", now " + client.getState());
+    }
+
+    private static void assertGapAtLeast(List<Long> arrivals, int index, long minMs) {
+        long gap = TimeUnit.NANOSECONDS.toMillis(arrivals.get(index) - arrivals.get(index - 1));
+        assertTrue("attempt " + index + " came after " + gap + "ms, expected at least " + minMs, gap >= minMs);
+    }
+
+    private static JsonObject change(String table, String type, String recordField, String record) {
+        JsonObject data = new JsonObject();
+        data.addProperty("table", table);
+        data.addProperty("type", type);
+        data.add(recordField, JsonParser.parseString(record));
+        JsonObject payload = new JsonObject();
+        payload.add("data", data);
+        JsonObject message = new JsonObject();
+        message.addProperty("topic", TOPIC);
+        message.addProperty("event", "postgres_changes");
+        message.add("payload", payload);
+        return message;
+    }
+
+    /**
+     * Server end of one socket: accepts the join and, optionally, answers heartbeats
+     */
+    private static class PhoenixServer extends WebSocketListener {
+        private final boolean answerHeartbeats;
+        private final BlockingQueue<JsonObject> received = new LinkedBlockingQueue<>();
+        private volatile WebSocket socket;
+
+        PhoenixServer(boolean answerHeartbeats) {
+            this.answerHeartbeats = answerHeartbeats;
+        }
+
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            socket = webSocket;
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            JsonObject message = JsonParser.parseString(text).getAsJsonObject();
+            received.add(message);
+            String event = message.get("event").getAsString();
+            if ("phx_join".equals(event) || ("heartbeat".equals(event) && answerHeartbeats)) {
+                JsonObject payload = new JsonObject();
+                payload.addProperty("status", "ok");
+                payload.add("response", new JsonObject());
+                JsonObject reply = new JsonObject();
+                reply.add("topic", message.get("topic"));
+                reply.addProperty("event", "phx_reply");
+                reply.add("payload", payload);
+                reply.add("ref", message.get("ref"));
+                webSocket.send(reply.toString());
+            }
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(1000, null);
+        }
+
+        void push(JsonObject message) {
+            socket.send(message.toString());
+        }
+
+        void close() {
+            socket.close(1000, "Going away");
+        }
+
+        JsonObject awaitEvent(String event) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+            while (System.currentTimeMillis() < deadline) {
+                JsonObject message = received.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                if (message != null && event.equals(message.get("event").getAsString())) {
+                    return message;
+                }
+            }
+            throw new AssertionError("no " + event + " received");
+        }
+    }
+
+    private static class FakeStore implements RealtimeClient.LocalStore {
+        final Set<String> pendingEdits = Collections.synchronizedSet(new HashSet<String>());
+        final BlockingQueue<Object> written = new LinkedBlockingQueue<>();
+        final BlockingQueue<String> deleted = new LinkedBlockingQueue<>();
+        private final AtomicInteger pulls = new AtomicInteger();
+
+        @Override
+        public boolean hasPendingLocalEdit(String table, String id) {
+            return pendingEdits.contains(table + ":" + id);
+        }
+
+        @Override
+        public void writeSynced(Object row) {
+            written.add(row);
+        }
+
+        @Override
+        public void deleteSynced(String table, String id) {
+            deleted.add(table + ":" + id);
+        }
+
+        @Override
+        public long pullChanges() {
+            pulls.incrementAndGet();
+            return 0;
+        }
+
+        boolean awaitPulls(int expected) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+            while (pulls.get() < expected && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            return pulls.get() >= expected;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.app.offline;
+
+import static org.junit.Assert.*;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+public class SupabaseApiClientBatchTest {
+    private static final String API_KEY = "test-key";
+
+    private MockWebServer server;
+    private SupabaseApiClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        client = new SupabaseApiClient(server.url("/rest/v1/").toString(), API_KEY);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void committedBatchReturnsOneRowPerOperation() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"committed\":true,\"results\":["
+            + "{\"row\":{\"id\":\"sale-1\",\"total\":5}},{\"row\":null}]}"));
+
+        SupabaseApiClient.BatchResult result = client.applyBatch(operations());
+
+        assertTrue(result.committed);
+        assertFalse(result.cancelled);
+        assertEquals(200, result.statusCode);
+        assertEquals(-1, result.failedIndex);
+        assertEquals(2, result.rows.size());
+        assertEquals("sale-1", JsonParser.parseString(result.rows.get(0)).getAsJsonObject().get("id").getAsString());
+        assertNull(result.rows.get(1));
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals("POST", request.getMethod());
+        assertEquals("/rest/v1/rpc/apply_sync_batch", request.getPath());
+        assertEquals(API_KEY, request.getHeader("apikey"));
+        JsonArray sent = JsonParser.parseString(request.getBody().readUtf8())
+            .getAsJsonObject().getAsJsonArray("operations");
+        assertEquals(2, sent.size());
+        JsonObject create = sent.get(0).getAsJsonObject();
+        assertEquals(OfflineConfig.OP_CREATE, create.get("op").getAsString());
+        assertEquals(OfflineConfig.TABLE_SALES, create.get("table").getAsString());
+        assertEquals("sale-1", create.get("id").getAsString());
+        assertEquals(5, create.getAsJsonObject("data").get("total").getAsInt());
+        // Deletes carry no data
+        assertFalse(sent.get(1).getAsJsonObject().has("data"));
+    }
+
+    @Test
+    public void rolledBackBatchReportsTheFailingOperation() {
+        server.enqueue(new MockResponse().setBody("{\"committed\":false,\"failed_index\":1,"
+            + "\"code\":\"23503\",\"error\":\"violates foreign key constraint\"}"));
+
+        SupabaseApiClient.BatchResult result = client.applyBatch(operations());
+
+        assertFalse(result.committed);
+        assertFalse(result.cancelled);
+        assertEquals(1, result.failedIndex);
+        assertEquals("23503", result.errorCode);
+        assertEquals("violates foreign key constraint", result.error);
+        assertTrue(result.rows.isEmpty());
+    }
+
+    @Test
+    public void failedRequestIsNotMistakenForARollback() {
+        server.enqueue(new MockResponse().setResponseCode(500).setBody("{\"message\":\"boom\"}"));
+
+        SupabaseApiClient.BatchResult result = client.applyBatch(operations());
+
+        assertFalse(result.committed);
+        assertFalse(result.cancelled);
+        assertEquals(500, result.statusCode);
+        assertEquals(-1, result.failedIndex);
+    }
+
+    @Test
+    public void cancelledBatchIsReportedAsCancelled() throws Exception {
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<SupabaseApiClient.BatchResult> pending = executor.submit(() -> client.applyBatch(operations()));
+            assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+            client.cancelInFlight();
+
+            SupabaseApiClient.BatchResult result = pending.get(5, TimeUnit.SECONDS);
+            assertFalse(result.committed);
+            assertTrue(result.cancelled);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<SupabaseApiClient.BatchOperation> operations() {
+        return Arrays.asList(
+            new SupabaseApiClient.BatchOperation(OfflineConfig.OP_CREATE, OfflineConfig.TABLE_SALES,
+                "sale-1", "{\"id\":\"sale-1\",\"total\":5}"),
+            new SupabaseApiClient.BatchOperation(OfflineConfig.OP_DELETE, OfflineConfig.TABLE_ORDERS,
+                "order-1", ""));
+    }
+}
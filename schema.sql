@@ -10,7 +10,8 @@ CREATE TABLE IF NOT EXISTS supermarkets (
     longitude DOUBLE PRECISION NOT NULL,
     email TEXT NULL,
     phone_numbers JSONB NULL,
-    created_at TIMESTAMP WITH TIME ZONE DEFAULT TIMEZONE('utc'::text, NOW()) NOT NULL
+    created_at TIMESTAMP WITH TIME ZONE DEFAULT TIMEZONE('utc'::text, NOW()) NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT TIMEZONE('utc'::text, NOW()) NOT NULL
 );
 
 CREATE TABLE IF NOT EXISTS sales (
@@ -30,7 +31,8 @@ CREATE TABLE IF NOT EXISTS sales (
     note TEXT NULL,
     fragrance_distribution JSONB NULL,
     payment_rendezvous JSONB NULL,
-    created_at TIMESTAMP WITH TIME ZONE DEFAULT TIMEZONE('utc'::text, NOW()) NOT NULL
+    created_at TIMESTAMP WITH TIME ZONE DEFAULT TIMEZONE('utc'::text, NOW()) NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT TIMEZONE('utc'::text, NOW()) NOT NULL
 );
 
 CREATE TABLE IF NOT EXISTS orders (
@@ -40,7 +42,8 @@ CREATE TABLE IF NOT EXISTS orders (
     quantity INTEGER NOT NULL,
     status TEXT NOT NULL CHECK (status IN ('pending', 'delivered', 'cancelled')),
     price_per_unit DECIMAL(10,2) NOT NULL,
-    created_at TIMESTAMP WITH TIME ZONE DEFAULT TIMEZONE('utc'::text, NOW()) NOT NULL
+    created_at TIMESTAMP WITH TIME ZONE DEFAULT TIMEZONE('utc'::text, NOW()) NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT TIMEZONE('utc'::text, NOW()) NOT NULL
 );
 
 CREATE TABLE IF NOT EXISTS payments (
@@ -60,7 +63,8 @@ CREATE TABLE IF NOT EXISTS stock_history (
     reason TEXT NOT NULL,
     current_stock INTEGER NOT NULL,
     fragrance_distribution JSONB NULL,
-    created_at TIMESTAMP WITH TIME ZONE DEFAULT TIMEZONE('utc'::text, NOW()) NOT NULL
+    created_at TIMESTAMP WITH TIME ZONE DEFAULT TIMEZONE('utc'::text, NOW()) NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT TIMEZONE('utc'::text, NOW()) NOT NULL
 );
 
 CREATE TABLE IF NOT EXISTS fragrance_stock (
@@ -97,4 +101,260 @@ CREATE POLICY "Enable all access for all users" ON stock_history
     FOR ALL USING (true);
 
 CREATE POLICY "Enable all access for all users" ON fragrance_stock
-    FOR ALL USING (true); 
\ No newline at end of file
+    FOR ALL USING (true); 
+
+-- Databases created before updated_at existed
+ALTER TABLE supermarkets ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITH TIME ZONE DEFAULT TIMEZONE('utc'::text, NOW()) NOT NULL;
+ALTER TABLE sales ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITH TIME ZONE DEFAULT TIMEZONE('utc'::text, NOW()) NOT NULL;
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITH TIME ZONE DEFAULT TIMEZONE('utc'::text, NOW()) NOT NULL;
+ALTER TABLE stock_history ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITH TIME ZONE DEFAULT TIMEZONE('utc'::text, NOW()) NOT NULL;
+
+-- updated_at is the clients' delta-pull watermark, so the server stamps it on every write
+-- instead of trusting the (possibly skewed) device clock in the payload
+CREATE OR REPLACE FUNCTION touch_updated_at()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    NEW.updated_at := TIMEZONE('utc'::text, NOW());
+    RETURN NEW;
+END;
+$$;
+
+-- Deleted rows leave a tombstone so delta pulls can propagate deletes
+CREATE TABLE IF NOT EXISTS deleted_rows (
+    table_name TEXT NOT NULL,
+    row_id TEXT NOT NULL,
+    deleted_at TIMESTAMP WITH TIME ZONE DEFAULT TIMEZONE('utc'::text, NOW()) NOT NULL,
+    PRIMARY KEY (table_name, row_id)
+);
+
+CREATE INDEX IF NOT EXISTS deleted_rows_table_deleted_at ON deleted_rows (table_name, deleted_at);
+
+ALTER TABLE deleted_rows ENABLE ROW LEVEL SECURITY;
+
+CREATE POLICY "Enable read access for all users" ON deleted_rows
+    FOR SELECT USING (true);
+
+CREATE OR REPLACE FUNCTION record_deleted_row()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+SECURITY DEFINER
+SET search_path = public
+AS $$
+BEGIN
+    INSERT INTO deleted_rows (table_name, row_id)
+    VALUES (TG_TABLE_NAME, OLD.id::TEXT)
+    ON CONFLICT (table_name, row_id) DO UPDATE SET deleted_at = EXCLUDED.deleted_at;
+    RETURN OLD;
+END;
+$$;
+
+DO $$
+DECLARE
+    synced_table TEXT;
+BEGIN
+    FOREACH synced_table IN ARRAY ARRAY['supermarkets', 'sales', 'orders', 'stock_history'] LOOP
+        EXECUTE format('DROP TRIGGER IF EXISTS %I ON %I', synced_table || '_touch_updated_at', synced_table);
+        EXECUTE format('CREATE TRIGGER %I BEFORE INSERT OR UPDATE ON %I '
+                       'FOR EACH ROW EXECUTE FUNCTION touch_updated_at()',
+                       synced_table || '_touch_updated_at', synced_table);
+        EXECUTE format('CREATE INDEX IF NOT EXISTS %I ON %I (updated_at, id)',
+                       synced_table || '_updated_at_id', synced_table);
+        EXECUTE format('DROP TRIGGER IF EXISTS %I ON %I', synced_table || '_record_deleted_row', synced_table);
+        EXECUTE format('CREATE TRIGGER %I AFTER DELETE ON %I '
+                       'FOR EACH ROW EXECUTE FUNCTION record_deleted_row()',
+                       synced_table || '_record_deleted_row', synced_table);
+    END LOOP;
+END;
+$$;
+
+-- Stream row changes to Realtime subscribers (the app's offline RealtimeClient)
+ALTER PUBLICATION supabase_realtime ADD TABLE sales, orders, payments, stock_history;
+
+-- Apply an ordered list of offline queue operations in a single transaction.
+-- Each element is {"op": "CREATE" | "UPDATE" | "DELETE" | "SALE_WITH_STOCK", "table": ..., "id": ...,
+-- "data": {...}}.
+-- CREATE is an upsert on the primary key, like the REST path. If any operation fails, none of
+-- them are kept and the result names the failing index instead of listing per-operation rows.
+CREATE OR REPLACE FUNCTION apply_sync_batch(operations JSONB)
+RETURNS JSONB
+LANGUAGE plpgsql
+SET search_path = public
+AS $$
+DECLARE
+    op JSONB;
+    op_index INTEGER := 0;
+    op_type TEXT;
+    target REGCLASS;
+    key_column TEXT;
+    key_type TEXT;
+    record_id TEXT;
+    payload JSONB;
+    column_list TEXT;
+    assignments TEXT;
+    unknown_column TEXT;
+    row_json JSONB;
+    affected INTEGER;
+    results JSONB := '[]'::JSONB;
+BEGIN
+    IF jsonb_typeof(operations) IS DISTINCT FROM 'array' THEN
+        RAISE EXCEPTION 'operations must be a JSON array' USING ERRCODE = '22023';
+    END IF;
+
+    BEGIN
+        FOR op IN SELECT value FROM jsonb_array_elements(operations) LOOP
+            op_type := upper(op->>'op');
+            target := to_regclass(format('public.%I', op->>'table'));
+            IF target IS NULL THEN
+                RAISE EXCEPTION 'Unknown table %', op->>'table' USING ERRCODE = '42P01';
+            END IF;
+
+            SELECT a.attname, format_type(a.atttypid, a.atttypmod)
+            INTO key_column, key_type
+            FROM pg_index i
+            JOIN pg_attribute a ON a.attrelid = i.indrelid AND a.attnum = i.indkey[0]
+            WHERE i.indrelid = target AND i.indisprimary;
+
+            payload := COALESCE(op->'data', '{}'::JSONB);
+            record_id := COALESCE(op->>'id', payload->>key_column);
+            row_json := NULL;
+
+            IF op_type IN ('CREATE', 'UPDATE') THEN
+                IF jsonb_typeof(payload) IS DISTINCT FROM 'object' OR payload = '{}'::JSONB THEN
+                    RAISE EXCEPTION 'Operation % has no data', op_index USING ERRCODE = '22023';
+                END IF;
+
+                SELECT k INTO unknown_column
+                FROM jsonb_object_keys(payload) AS k
+                WHERE NOT EXISTS (
+                    SELECT 1 FROM pg_attribute a
+                    WHERE a.attrelid = target AND a.attname = k AND a.attnum > 0 AND NOT a.attisdropped
+                )
+                LIMIT 1;
+                IF unknown_column IS NOT NULL THEN
+                    RAISE EXCEPTION 'Unknown column % on %', unknown_column, op->>'table' USING ERRCODE = '42703';
+                END IF;
+
+                SELECT string_agg(format('%I', k), ', '),
+                       string_agg(format('%I = EXCLUDED.%I', k, k), ', ')
+                INTO column_list, assignments
+                FROM jsonb_object_keys(payload) AS k;
+            END IF;
+
+            IF op_type = 'CREATE' THEN
+                EXECUTE format(
+                    'INSERT INTO %s AS t (%s) SELECT %s FROM jsonb_populate_record(NULL::%s, $1) '
+                    'ON CONFLICT (%I) DO UPDATE SET %s RETURNING to_jsonb(t.*)',
+                    target, column_list, column_list, target, key_column, assignments)
+                INTO row_json USING payload;
+                GET DIAGNOSTICS affected = ROW_COUNT;
+                record_id := row_json->>key_column;
+            ELSIF op_type = 'UPDATE' THEN
+                EXECUTE format(
+                    'UPDATE %s AS t SET (%s) = (SELECT %s FROM jsonb_populate_record(NULL::%s, $1)) '
+                    'WHERE t.%I = CAST($2 AS %s) RETURNING to_jsonb(t.*)',
+                    target, column_list, column_list, target, key_column, key_type)
+                INTO row_json USING payload, record_id;
+                GET DIAGNOSTICS affected = ROW_COUNT;
+            ELSIF op_type = 'DELETE' THEN
+                EXECUTE format('DELETE FROM %s AS t WHERE t.%I = CAST($1 AS %s)', target, key_column, key_type)
+                USING record_id;
+                GET DIAGNOSTICS affected = ROW_COUNT;
+            ELSIF op_type = 'SALE_WITH_STOCK' THEN
+                row_json := record_sale_with_stock(payload->'sale', payload->'movement');
+                affected := 1;
+            ELSE
+                RAISE EXCEPTION 'Unknown operation %', op->>'op' USING ERRCODE = '22023';
+            END IF;
+
+            results := results || jsonb_build_array(jsonb_build_object(
+                'index', op_index,
+                'op', op_type,
+                'table', op->>'table',
+                'id', record_id,
+                'affected', affected,
+                'row', row_json));
+            op_index := op_index + 1;
+        END LOOP;
+    EXCEPTION WHEN OTHERS THEN
+        -- Leaving the block rolls back every operation applied so far
+        RETURN jsonb_build_object(
+            'committed', false,
+            'failed_index', op_index,
+            'code', SQLSTATE,
+            'error', SQLERRM);
+    END;
+
+    RETURN jsonb_build_object('committed', true, 'results', results);
+END;
+$$;
+
+GRANT EXECUTE ON FUNCTION apply_sync_batch(JSONB) TO anon, authenticated;
+
+
+-- Record a sale together with the stock movement it causes, in one transaction.
+-- The sale is upserted like a CREATE. The movement row (stock_history) and its per-fragrance
+-- quantities are applied only the first time its id is seen, so resending after a timeout
+-- never decrements fragrance_stock twice.
+CREATE OR REPLACE FUNCTION record_sale_with_stock(sale JSONB, movement JSONB)
+RETURNS JSONB
+LANGUAGE plpgsql
+SET search_path = public
+AS $$
+DECLARE
+    result JSONB;
+    sale_row JSONB;
+    movement_row JSONB;
+    applied BOOLEAN := false;
+    direction INTEGER;
+    delta RECORD;
+BEGIN
+    IF sale IS NULL OR movement IS NULL OR movement->>'id' IS NULL THEN
+        RAISE EXCEPTION 'sale and movement with an id are required' USING ERRCODE = '22023';
+    END IF;
+
+    result := apply_sync_batch(jsonb_build_array(
+        jsonb_build_object('op', 'CREATE', 'table', 'sales', 'id', sale->>'id', 'data', sale)));
+    IF NOT (result->>'committed')::BOOLEAN THEN
+        RAISE EXCEPTION 'sale: %', result->>'error' USING ERRCODE = result->>'code';
+    END IF;
+    sale_row := result->'results'->0->'row';
+
+    -- Serialize resends of the same movement so only one of them applies the quantities
+    PERFORM pg_advisory_xact_lock(hashtext('stock_history:' || (movement->>'id')));
+
+    SELECT to_jsonb(h.*) INTO movement_row FROM stock_history h WHERE h.id = movement->>'id';
+    IF movement_row IS NULL THEN
+        direction := CASE movement->>'type' WHEN 'removed' THEN -1 WHEN 'added' THEN 1 END;
+        IF direction IS NULL THEN
+            RAISE EXCEPTION 'Unsupported movement type %', movement->>'type' USING ERRCODE = '22023';
+        END IF;
+
+        result := apply_sync_batch(jsonb_build_array(
+            jsonb_build_object('op', 'CREATE', 'table', 'stock_history', 'id', movement->>'id', 'data', movement)));
+        IF NOT (result->>'committed')::BOOLEAN THEN
+            RAISE EXCEPTION 'movement: %', result->>'error' USING ERRCODE = result->>'code';
+        END IF;
+        movement_row := result->'results'->0->'row';
+
+        FOR delta IN
+            SELECT key AS fragrance_id, value::INTEGER AS quantity
+            FROM jsonb_each_text(COALESCE(movement->'fragrance_distribution', '{}'::JSONB))
+        LOOP
+            UPDATE fragrance_stock
+            SET quantity = quantity + direction * delta.quantity,
+                updated_at = TIMEZONE('utc'::text, NOW())
+            WHERE fragrance_id = delta.fragrance_id;
+            IF NOT FOUND THEN
+                RAISE EXCEPTION 'Unknown fragrance %', delta.fragrance_id USING ERRCODE = '23503';
+            END IF;
+        END LOOP;
+        applied := true;
+    END IF;
+
+    RETURN jsonb_build_object('sale', sale_row, 'movement', movement_row, 'applied', applied);
+END;
+$$;
+
+GRANT EXECUTE ON FUNCTION record_sale_with_stock(JSONB, JSONB) TO anon, authenticated;
@@ -0,0 +1,55 @@
+import { registerPlugin, PluginListenerHandle } from '@capacitor/core';
+
+export type OfflineTable = 'sales' | 'orders' | 'stock';
+
+export interface OfflineQueueOperation {
+  /** SALE_WITH_STOCK takes table 'sales', the sale id as recordId and data { sale, movement } */
+  operation: 'CREATE' | 'UPDATE' | 'DELETE' | 'SALE_WITH_STOCK';
+  table: string;
+  recordId?: string;
+  data?: Record<string, unknown>;
+  priority?: number;
+}
+
+export interface OfflinePage<T> {
+  items: T[];
+  hasMore: boolean;
+  nextBeforeDate?: number;
+  nextBeforeId?: string;
+}
+
+export interface OfflineQueueStats {
+  pending: number;
+  failed: number;
+  queueSize: number;
+  deadLetters: number;
+  pressure: 'NORMAL' | 'HIGH' | 'FULL';
+}
+
+export interface OfflineCacheStats {
+  hits: number;
+  misses: number;
+  size: number;
+  hitRatio: number;
+}
+
+// Native side: android/app/src/main/java/com/example/app/plugins/OfflineStorePlugin.java
+export interface OfflineStorePlugin {
+  enqueue(options: { items: OfflineQueueOperation[] }): Promise<{ accepted: number; total: number }>;
+  getPage<T = Record<string, unknown>>(options: {
+    table: OfflineTable;
+    supermarketId?: string;
+    beforeDate?: number;
+    beforeId?: string;
+    pageSize?: number;
+  }): Promise<OfflinePage<T>>;
+  replayDeadLetters(options: { table?: string; minStatus?: number; maxStatus?: number }): Promise<{ replayed: number }>;
+  discardDeadLetters(options: { table?: string; minStatus?: number; maxStatus?: number }): Promise<{ discarded: number }>;
+  getQueueStats(): Promise<OfflineQueueStats>;
+  getCacheStats(): Promise<Record<string, OfflineCacheStats>>;
+  startQueueStatsUpdates(): Promise<void>;
+  stopQueueStatsUpdates(): Promise<void>;
+  addListener(eventName: 'queueStats', listener: (stats: OfflineQueueStats) => void): Promise<PluginListenerHandle>;
+}
+
+export const OfflineStore = registerPlugin<OfflineStorePlugin>('OfflineStore');